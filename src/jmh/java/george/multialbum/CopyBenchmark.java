@@ -0,0 +1,83 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies a synthetic album the same way the copy stage of the command does, on each engine with pools of different
+ * sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyBenchmark {
+    @Param({"bounded-elastic", "fixed", "parallel"})
+    public String engine;
+
+    @Param({"1", "2", "4", "8"})
+    public int schedulerSize;
+
+    @Param({"150"})
+    public int trackCount;
+
+    @Param({"4194304"})
+    public int audioBytes;
+
+    private final CopyAudioFile copyAudioFile = new CopyAudioFile();
+    private File workDir;
+    private File outputDir;
+    private List<File> inputFiles;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("george-copy-benchmark").toFile();
+        File inputDir = new File(workDir, "input");
+        outputDir = new File(workDir, "output");
+        inputDir.mkdirs();
+
+        inputFiles = new ArrayList<>(trackCount);
+        for (int i = 1; i <= trackCount; i++) {
+            File file = new File(inputDir, "1-" + String.format("%03d", i) + " title.m4a");
+            inputFiles.add(new Mp4Fixture().trackNumber(i).audioBytes(audioBytes).writeTo(file));
+        }
+        scheduler = ExecutionEngine.fromName(engine).createScheduler(schedulerSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanOutput() throws IOException {
+        FileUtils.deleteDirectory(outputDir);
+        outputDir.mkdirs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        scheduler.dispose();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public Long copy() {
+        return Flux.fromIterable(inputFiles)
+                .flatMap((inputFile) -> Mono.fromCallable(() -> {
+                    File outputFile = new File(outputDir, inputFile.getName());
+                    copyAudioFile.copy(inputFile, outputFile);
+                    return outputFile;
+                }).subscribeOn(scheduler), schedulerSize)
+                .count()
+                .block();
+    }
+}
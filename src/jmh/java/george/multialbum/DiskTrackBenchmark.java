@@ -0,0 +1,57 @@
+package george.multialbum;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskTrackBenchmark {
+    @Param({"150", "10000"})
+    public int trackCount;
+
+    private final DiskTrackNameParser parser = new DiskTrackNameParser(Collections.singletonList("m4a"));
+    private List<String> fileNames;
+    private List<DiskTrack> tracks;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(trackCount);
+        fileNames = new ArrayList<>(trackCount);
+        tracks = new ArrayList<>(trackCount);
+        for (int i = 0; i < trackCount; i++) {
+            String fileName = (random.nextInt(6) + 1) + "-" + String.format("%03d", random.nextInt(999) + 1) + " title " + i + ".m4a";
+            fileNames.add(fileName);
+            tracks.add(new DiskTrack(new File(fileName)));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String fileName : fileNames) {
+            blackhole.consume(parser.parse(fileName));
+        }
+    }
+
+    @Benchmark
+    public List<DiskTrack> sort() {
+        List<DiskTrack> sorted = new ArrayList<>(tracks);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<RenumberedTrack> number() {
+        return RenumberedTrack.number(tracks, new File("output"));
+    }
+}
@@ -0,0 +1,67 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the track number of a synthetic M4A file, both through the trkn fast path and through jaudiotagger's full
+ * commit (for files that do not have a trkn atom yet).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateTrackNumberBenchmark {
+    @Param({"true", "false"})
+    public boolean withTrackNumberAtom;
+
+    @Param({"4194304"})
+    public int audioBytes;
+
+    private final UpdateTrackNumberInMetaData updater = new UpdateTrackNumberInMetaData();
+    private File workDir;
+    private File source;
+    private File file;
+    private File copy;
+    private int trackNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("george-tag-benchmark").toFile();
+        Mp4Fixture fixture = new Mp4Fixture().audioBytes(audioBytes);
+        if (!withTrackNumberAtom) {
+            fixture.withoutTrackNumber();
+        }
+        source = fixture.writeTo(new File(workDir, "1-01 source.m4a"));
+        file = new File(workDir, "1-01 title.m4a");
+        copy = new File(workDir, "1-01 copy.m4a");
+    }
+
+    @Setup(Level.Invocation)
+    public void resetFile() throws IOException {
+        new CopyAudioFile().copy(source, file);
+        trackNumber = trackNumber % 999 + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public void update() {
+        updater.update(file, String.format("%03d", trackNumber));
+    }
+
+    @Benchmark
+    public void copyWithTrackNumber() {
+        updater.copyWithTrackNumber(source, copy, String.format("%03d", trackNumber));
+    }
+}
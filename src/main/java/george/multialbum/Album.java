@@ -0,0 +1,44 @@
+package george.multialbum;
+
+import java.io.File;
+import java.util.Objects;
+
+public class Album {
+    private final File inputDir;
+    private final File outputDir;
+
+    public Album(File inputDir, File outputDir) {
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+    }
+
+    public File getInputDir() {
+        return inputDir;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Album album = (Album) o;
+        return inputDir.equals(album.inputDir) &&
+                outputDir.equals(album.outputDir);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inputDir, outputDir);
+    }
+
+    @Override
+    public String toString() {
+        return "Album{" +
+                "inputDir=" + inputDir +
+                ", outputDir=" + outputDir +
+                '}';
+    }
+}
@@ -0,0 +1,378 @@
+package george.multialbum;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A ZIP or TAR archive holding the disk tracks of an album, read entry by entry so the tracks can be written straight
+ * to the output directory instead of extracting the archive first.
+ * <p>
+ * A ZIP archive is listed from its central directory without reading any audio. A TAR archive has no index, so
+ * listing it reads every header and skips over the audio in between, which for a compressed TAR still means
+ * decompressing it. Either way the archive is only listed once, later listings reuse the first one.
+ */
+public abstract class AlbumArchive implements Closeable {
+    private static final String[] TAR_EXTENSIONS = {".tar", ".tar.gz", ".tgz"};
+
+    public interface EntryReader {
+        /**
+         * @param content the content of the entry, which is only readable until this returns
+         */
+        void read(String name, InputStream content) throws IOException;
+    }
+
+    private final File file;
+    private Map<String, Long> sizes;
+
+    private AlbumArchive(File file) {
+        this.file = file;
+    }
+
+    public static boolean isArchive(File file) {
+        return file.isFile() && (isZip(file) || isTar(file));
+    }
+
+    public static AlbumArchive open(File file) throws IOException {
+        if (isZip(file)) {
+            return new Zip(file);
+        }
+        if (isTar(file)) {
+            return new Tar(file);
+        }
+        throw new IllegalArgumentException("Not a ZIP or TAR archive: " + file.getAbsolutePath());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the path inside the archive of every file in it, directories are left out
+     */
+    public List<String> list() throws IOException {
+        return new ArrayList<>(sizes().keySet());
+    }
+
+    /**
+     * @return the uncompressed size of every file in the archive as its header has it, by path inside the archive
+     */
+    public Map<String, Long> sizes() throws IOException {
+        if (sizes == null) {
+            sizes = Collections.unmodifiableMap(listSizes());
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the size of every file in the archive by path, in the order they are stored in
+     */
+    protected abstract LinkedHashMap<String, Long> listSizes() throws IOException;
+
+    /**
+     * Reads the wanted entries one after the other, in the order they are stored in the archive.
+     */
+    public abstract void read(Predicate<String> wanted, EntryReader reader) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    private static boolean isZip(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    private static boolean isTar(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (String extension : TAR_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Zip extends AlbumArchive {
+        private final ZipFile zipFile;
+
+        private Zip(File file) throws IOException {
+            super(file);
+            zipFile = new ZipFile(file);
+        }
+
+        @Override
+        protected LinkedHashMap<String, Long> listSizes() {
+            LinkedHashMap<String, Long> sizes = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    sizes.put(entry.getName(), Math.max(0, entry.getSize()));
+                }
+            }
+            return sizes;
+        }
+
+        @Override
+        public void read(Predicate<String> wanted, EntryReader reader) throws IOException {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && wanted.test(entry.getName())) {
+                    try (InputStream content = zipFile.getInputStream(entry)) {
+                        reader.read(entry.getName(), content);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Reads POSIX (ustar) archives, with the GNU and pax extensions for names longer than 100 characters.
+     */
+    private static class Tar extends AlbumArchive {
+        private static final int BLOCK_SIZE = 512;
+
+        private Tar(File file) {
+            super(file);
+        }
+
+        @Override
+        protected LinkedHashMap<String, Long> listSizes() throws IOException {
+            LinkedHashMap<String, Long> sizes = new LinkedHashMap<>();
+            read((name, size) -> {
+                sizes.put(name, size);
+                return false;
+            }, (name, content) -> {
+            });
+            return sizes;
+        }
+
+        @Override
+        public void read(Predicate<String> wanted, EntryReader reader) throws IOException {
+            read((name, size) -> wanted.test(name), reader);
+        }
+
+        /**
+         * @param wanted tested with the path and the size of every file, as the header has them
+         */
+        private void read(BiPredicate<String, Long> wanted, EntryReader reader) throws IOException {
+            try (InputStream input = open()) {
+                byte[] header = new byte[BLOCK_SIZE];
+                String longName = null;
+                while (readBlock(input, header) && !isEndOfArchive(header)) {
+                    long size = sizeOf(header);
+                    long padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+                    char type = (char) header[156];
+
+                    if (type == 'L' || type == 'x') {
+                        // the name of the next entry, when it does not fit in the header
+                        byte[] extension = new byte[(int) size];
+                        readFully(input, extension);
+                        skipFully(input, padding);
+                        String name = type == 'L' ? textOf(extension, 0, extension.length) : paxPathOf(extension);
+                        longName = name == null ? longName : name;
+                        continue;
+                    }
+
+                    String name = longName == null ? nameOf(header) : longName;
+                    longName = null;
+                    if ((type == '0' || type == 0) && wanted.test(name, size)) {
+                        BoundedInputStream content = new BoundedInputStream(input, size);
+                        reader.read(name, content);
+                        skipFully(input, content.remaining + padding);
+                    } else {
+                        skipFully(input, size + padding);
+                    }
+                }
+            }
+        }
+
+        private InputStream open() throws IOException {
+            InputStream input = new BufferedInputStream(Files.newInputStream(getFile().toPath()), 64 * 1024);
+            String name = getFile().getName().toLowerCase(Locale.ROOT);
+            return name.endsWith(".gz") || name.endsWith(".tgz") ? new GZIPInputStream(input, 64 * 1024) : input;
+        }
+
+        private static String nameOf(byte[] header) {
+            String name = textOf(header, 0, 100);
+            boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a' && header[261] == 'r';
+            String prefix = ustar ? textOf(header, 345, 155) : "";
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+
+        /**
+         * Sizes are octal numbers, or big endian binary numbers when the highest bit of the first byte is set.
+         */
+        private static long sizeOf(byte[] header) throws IOException {
+            long size = 0;
+            if ((header[124] & 0x80) != 0) {
+                for (int i = 125; i < 136; i++) {
+                    size = (size << 8) | (header[i] & 0xFF);
+                }
+                return size;
+            }
+            for (int i = 124; i < 136; i++) {
+                byte b = header[i];
+                if (b == 0 || b == ' ') {
+                    if (size > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (b < '0' || b > '7') {
+                    throw new IOException("Corrupt TAR header, the size is not a number");
+                }
+                size = size * 8 + (b - '0');
+            }
+            return size;
+        }
+
+        /**
+         * @return the path of the records in a pax extended header, like "30 path=some/long/name.m4a\n"
+         */
+        private static String paxPathOf(byte[] records) {
+            String text = new String(records, StandardCharsets.UTF_8);
+            for (String record : text.split("\n")) {
+                int space = record.indexOf(' ');
+                if (space > 0 && record.startsWith("path=", space + 1)) {
+                    return record.substring(space + 1 + "path=".length());
+                }
+            }
+            return null;
+        }
+
+        private static String textOf(byte[] bytes, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static boolean isEndOfArchive(byte[] header) {
+            for (byte b : header) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return false when the archive ended before the block
+         */
+        private static boolean readBlock(InputStream input, byte[] block) throws IOException {
+            int read = 0;
+            while (read < block.length) {
+                int count = input.read(block, read, block.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+            return true;
+        }
+
+        private static void readFully(InputStream input, byte[] bytes) throws IOException {
+            if (!readBlock(input, bytes)) {
+                throw new EOFException("TAR archive ended in the middle of an entry");
+            }
+        }
+
+        private static void skipFully(InputStream input, long count) throws IOException {
+            long remaining = count;
+            while (remaining > 0) {
+                long skipped = input.skip(remaining);
+                if (skipped <= 0) {
+                    if (input.read() < 0) {
+                        throw new EOFException("TAR archive ended in the middle of an entry");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+    }
+
+    /**
+     * The content of a single TAR entry, which leaves the rest of the archive open.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream input, long size) {
+            super(input);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(bytes, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // the archive is closed once all entries are read
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.retry.Retry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Copies the disk tracks of albums to their output directories and renumbers them, for the command line and for
+ * anything else that wants to renumber albums in process.
+ * <p>
+ * A renumberer is safe to share between threads once it is set up, albums renumbered at the same time share its
+ * scheduler, metrics and cache of parsed sources. What became of each track, failures included, is only ever told
+ * through the results of the album it belongs to. The scheduler belongs to the caller, who disposes of it
+ * once done renumbering.
+ */
+public class AlbumRenumberer {
+    private final Scheduler scheduler;
+    private final CopyAudioFile copyAudioFile = new CopyAudioFile();
+    private final ListDiskTracks listDiskTracks = new ListDiskTracks(new DiskTrackNameParser(UpdateTrackNumberInMetaData.AUDIO_FILE_EXTENSIONS));
+    private TagWriter tagWriter = new UpdateTrackNumberInMetaData();
+    private AudioFileCache audioFileCache = new AudioFileCache();
+    private RunMetrics metrics = new RunMetrics();
+    private RenumberListener listener = RenumberListener.NONE;
+
+    public AlbumRenumberer(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        tagWriter.setMetrics(metrics);
+        tagWriter.setAudioFileCache(audioFileCache);
+    }
+
+    public void setTagWriter(TagWriter tagWriter) {
+        this.tagWriter = tagWriter;
+        tagWriter.setMetrics(metrics);
+        tagWriter.setAudioFileCache(audioFileCache);
+    }
+
+    /**
+     * Where the sources are parsed, a cache shared by several renumberers lets each of them skip the sources one of
+     * the others parsed.
+     */
+    public void setAudioFileCache(AudioFileCache audioFileCache) {
+        this.audioFileCache = audioFileCache;
+        tagWriter.setAudioFileCache(audioFileCache);
+    }
+
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        tagWriter.setMetrics(metrics);
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Who hears about the progress of the albums and what went wrong along the way, nobody by default.
+     */
+    public void setListener(RenumberListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Copies and renumbers the tracks of the album once subscribed to. A result is emitted for every track of the
+     * album: once it is written and recorded in the manifest, once it is known to be unchanged since the last run, or
+     * once it was quarantined or failed verification. With fail fast the first failure is an error instead.
+     */
+    public Flux<TrackResult> renumber(Album album, RenumberOptions options) {
+        if (AlbumArchive.isArchive(album.getInputDir())) {
+            return onScheduler(() -> renumberArchive(album, options)).flatMapIterable((results) -> results);
+        }
+        return onScheduler(() -> prepareOutputDir(album.getOutputDir(), options))
+                // closed before the album completes, so whoever renumbers it next finds the journal closed
+                .flatMapMany((manifest) -> Flux.using(() -> manifest, (m) -> renumber(album, m, options), TrackManifest::close));
+    }
+
+    /**
+     * Starts renumbering the album right away.
+     *
+     * @return the result of every track, once the album is done
+     */
+    public CompletableFuture<List<TrackResult>> renumberAsync(Album album, RenumberOptions options) {
+        return renumber(album, options).collectList().toFuture();
+    }
+
+    /**
+     * @return the manifest of the output directory, once the files a run that died left unfinished are gone
+     */
+    private TrackManifest prepareOutputDir(File outputDir, RenumberOptions options) {
+        deleteUnfinishedFiles(outputDir);
+        return TrackManifest.load(outputDir, options.isResume());
+    }
+
+    private void deleteUnfinishedFiles(File outputDir) {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            listener.warn("Failed making output directory: {0}", outputDir.getAbsolutePath());
+        }
+
+        try {
+            copyAudioFile.deletePartFiles(outputDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete unfinished files in: " + outputDir.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes the tracks of an archive straight to the output directory, each one tagged before it is moved into place,
+     * so every byte is written once. The archive is listed and numbered before any audio is read.
+     * <p>
+     * An entry has no size and last modified time on disk the manifest could compare, so every track of an archive
+     * is written again on every run, and the manifest is left as it is. Copy modes, verifying, hashing and resuming
+     * need the source as a file or the manifest, so they do not apply.
+     */
+    private List<TrackResult> renumberArchive(Album album, RenumberOptions options) throws IOException {
+        File outputDir = album.getOutputDir();
+        deleteUnfinishedFiles(outputDir);
+        List<TrackResult> results = new ArrayList<>();
+
+        try (AlbumArchive archive = AlbumArchive.open(album.getInputDir())) {
+            long start = System.nanoTime();
+            List<DiskTrack> tracks = listDiskTracks.list(archive, (file, rejection) -> {
+                if (rejection != DiskTrackNameParser.Rejection.NOT_AN_AUDIO_FILE) {
+                    listener.warn("Ignoring file ({0}), since the filename does NOT match the correct pattern: {1}",
+                            file.getName(), rejection.getDescription());
+                }
+            });
+            metrics.record(RunMetrics.Stage.LIST, album.getInputDir(), System.nanoTime() - start);
+            if (tracks.isEmpty()) {
+                listener.warn("No audio files found to copy.");
+                return results;
+            }
+
+            Map<String, RenumberedTrack> tracksByEntry = new HashMap<>();
+            for (RenumberedTrack track : RenumberedTrack.number(tracks, outputDir)) {
+                tracksByEntry.put(track.getDiskTrack().getEntryName(), track);
+            }
+            listener.warn("Copying and renumbering {0} file(s) from {1}...", tracks.size(), archive.getFile().getName());
+            listener.numbered(album, tracks.size(), 0);
+
+            archive.read(tracksByEntry::containsKey, (entryName, content) -> {
+                RenumberedTrack track = tracksByEntry.get(entryName);
+                File outputFile = track.getOutputFile();
+                File partFile = copyAudioFile.partFileOf(outputFile);
+
+                try {
+                    long copyStart = System.nanoTime();
+                    Files.copy(content, partFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    metrics.record(RunMetrics.Stage.COPY, outputFile, System.nanoTime() - copyStart);
+
+                    long tagStart = System.nanoTime();
+                    tagWriter.update(partFile, tagsOf(track, options));
+                    metrics.record(RunMetrics.Stage.TAG, outputFile, System.nanoTime() - tagStart);
+
+                    copyAudioFile.moveIntoPlace(partFile, outputFile);
+                } catch (IOException | RuntimeException e) {
+                    // the entry can not be read again without reading the archive again, so it is not retried
+                    if (options.isFailFast()) {
+                        throw e;
+                    }
+                    Files.deleteIfExists(partFile.toPath());
+                    metrics.quarantined();
+                    listener.warn("Quarantined {0}: {1}", entryName, e.getMessage());
+                    results.add(TrackResult.quarantined(track, track.getInputFile(), e));
+                    return;
+                }
+                metrics.copied(outputFile.length());
+                metrics.numbered();
+                listener.copied(album, track);
+                listener.renumbered(album, track);
+                results.add(TrackResult.written(track));
+            });
+        }
+        return results;
+    }
+
+    /**
+     * Copies the tracks whose source changed while the album is still being listed. The track numbers are only known
+     * once every track of the album is listed, so tagging waits for that.
+     */
+    private Flux<TrackResult> renumber(Album album, TrackManifest manifest, RenumberOptions options) {
+        File outputDir = album.getOutputDir();
+        File cloneDir = new File(outputDir, CopyAudioFile.CLONE_DIR_NAME);
+        VerifyCopiedAudio verifyCopiedAudio = new VerifyCopiedAudio();
+        Flux<DiskTrack> listedTracks = listDiskTracksIn(album.getInputDir()).cache();
+
+        Set<File> changedSources = ConcurrentHashMap.newKeySet();
+        Flux<DiskTrack> changedTracks = listedTracks
+                .flatMap((track) -> sourceChanged(track, outputDir, manifest, options)
+                        .filter((changed) -> changed)
+                        .map((changed) -> track), options.getMaxConcurrency())
+                .doOnNext((track) -> changedSources.add(track.getFile()))
+                .cache();
+
+        Mono<NumberedAlbum> numberedAlbum = changedTracks
+                .then(listedTracks.collectList())
+                .map((tracks) -> number(tracks, album, changedSources, manifest, options))
+                .cache();
+
+        int tagConcurrency = options.getTagConcurrency();
+        Flux<TrackResult> results;
+        if (options.getCopyMode() == CopyMode.REWRITE) {
+            // the track number is written while copying, so nothing can be copied before the album is numbered
+            results = numberedAlbum.flatMapMany((numbered) -> Flux.merge(
+                    changedTracks.map(numbered::trackOf).flatMap((track) -> isolated(copyWithTags(track, options),
+                            track.getInputFile(), Mono.just(track), options), options.getMaxConcurrency()),
+                    Flux.fromIterable(numbered.getTracksToRenumber()).flatMap((track) -> isolated(updateTrackNumber(track, options),
+                            track.getOutputFile(), Mono.just(track), options), tagConcurrency)
+            ));
+        } else {
+            Mono<Set<File>> clonedSources = cloneAll(changedTracks, cloneDir, options);
+            Flux<TrackResult> copiedTracks = changedTracks
+                    .flatMap((track) -> isolated(clonedSources.flatMap((cloned) -> copyFileTo(track, new File(outputDir, track.getFile().getName()),
+                            cloned.contains(track.getFile()) ? new File(cloneDir, track.getFile().getName()) : null, verifyCopiedAudio, options)),
+                            track.getFile(), numberedAlbum.map((numbered) -> numbered.trackOf(track)), options), options.getMaxConcurrency())
+                    .concatMap((result) -> numberedAlbum.map((numbered) -> {
+                        if (!result.isFailed()) {
+                            listener.copied(album, result.getTrack());
+                        }
+                        return result;
+                    }));
+
+            results = Flux.merge(copiedTracks, numberedAlbum.flatMapIterable(NumberedAlbum::getTracksToRenumber).map(TrackResult::written))
+                    .flatMap((result) -> unlessFailed(result, (track) -> isolated(updateTrackNumber(track, options),
+                            track.getOutputFile(), Mono.just(track), options)), tagConcurrency);
+        }
+
+        if (options.isVerify()) {
+            // a track that fails verification is left out of the manifest, so the next run copies it again
+            results = results.flatMap((result) -> unlessFailed(result, (track) -> verify(track, manifest, verifyCopiedAudio)),
+                    options.getMaxConcurrency());
+        }
+
+        Flux<TrackResult> recordedResults = results
+                .flatMap((result) -> unlessFailed(result, (track) -> recordInManifest(track, manifest, options)))
+                .concatMap((result) -> numberedAlbum.map((numbered) -> {
+                    if (!result.isFailed()) {
+                        listener.renumbered(album, result.getTrack());
+                    }
+                    return result;
+                }))
+                .concatWith(numberedAlbum.flatMapIterable(NumberedAlbum::getUnchangedTracks)
+                        .flatMap((track) -> unchanged(track, manifest, verifyCopiedAudio, options), options.getMaxConcurrency()))
+                .concatWith(numberedAlbum.flatMap((numbered) -> {
+                    if (numbered.getTracks().isEmpty()) {
+                        return Mono.empty();
+                    }
+                    return Mono.<TrackResult>fromRunnable(() -> {
+                        manifest.retainOnly(numbered.getTracks());
+                        manifest.save();
+                    });
+                }));
+        if (options.getCopyMode() != CopyMode.CLONE) {
+            return recordedResults;
+        }
+        // the clones that were not moved into place are gone before the album is done
+        return Flux.using(() -> cloneDir, (dir) -> recordedResults, FileUtils::deleteQuietly);
+    }
+
+    /**
+     * Clones every changed source of the album with a single cp once the album is listed, instead of forking one per
+     * file, so cloned tracks are only copied once the album is listed.
+     *
+     * @return the sources that were cloned into the directory, none unless the copy mode is clone
+     */
+    private Mono<Set<File>> cloneAll(Flux<DiskTrack> changedTracks, File cloneDir, RenumberOptions options) {
+        if (options.getCopyMode() != CopyMode.CLONE) {
+            return Mono.just(Collections.emptySet());
+        }
+        // a source that was not cloned is copied, where it gets retried or quarantined
+        return changedTracks
+                .map(DiskTrack::getFile)
+                .collectList()
+                .flatMap((sources) -> onScheduler(() -> copyAudioFile.cloneAll(sources, cloneDir)))
+                .onErrorReturn(Collections.emptySet())
+                .cache();
+    }
+
+    private NumberedAlbum number(List<DiskTrack> tracks, Album album, Set<File> changedSources,
+                                 TrackManifest manifest, RenumberOptions options) {
+        if (tracks.isEmpty()) {
+            listener.warn("No audio files found to copy.");
+        }
+
+        List<RenumberedTrack> renumberedTracks = RenumberedTrack.number(tracks, album.getOutputDir());
+        List<RenumberedTrack> tracksToRenumber = new ArrayList<>();
+        List<RenumberedTrack> unchangedTracks = new ArrayList<>();
+        for (RenumberedTrack track : renumberedTracks) {
+            if (changedSources.contains(track.getInputFile())) {
+                continue;
+            }
+            if (manifest.tagsChanged(track, tagsOf(track, options))) {
+                tracksToRenumber.add(track);
+            } else {
+                unchangedTracks.add(track);
+            }
+        }
+
+        if (!unchangedTracks.isEmpty()) {
+            listener.info("Skipping {0} file(s) that are unchanged since the last run", unchangedTracks.size());
+        }
+        listener.warn("Copying {0} and renumbering {1} file(s)...", changedSources.size(), tracksToRenumber.size());
+        listener.numbered(album, changedSources.size(), tracksToRenumber.size());
+
+        return new NumberedAlbum(renumberedTracks, tracksToRenumber, unchangedTracks);
+    }
+
+    private Mono<Boolean> sourceChanged(DiskTrack track, File outputDir, TrackManifest manifest, RenumberOptions options) {
+        if (options.isForce()) {
+            return Mono.just(true);
+        }
+        // a source that can not even be checked is copied, where it gets retried or quarantined
+        return onScheduler(() -> manifest.sourceChanged(track.getFile(), new File(outputDir, track.getFile().getName()), options.isHash()))
+                .onErrorReturn(true);
+    }
+
+    /**
+     * Tries the work on a single file again after transient I/O errors, waiting longer every time, and quarantines
+     * the file once it keeps failing, so one bad file never stops the files around it.
+     *
+     * @param track the track the work is for, only waited for once the work is done
+     * @return the track as written, or as quarantined along with the error it kept failing with
+     */
+    private Mono<TrackResult> isolated(Mono<?> work, File file, Mono<RenumberedTrack> track, RenumberOptions options) {
+        Mono<?> retried = work.retryWhen(Retry.backoff(options.getRetries(), options.getRetryBackoff())
+                .filter(Quarantine::isTransient)
+                .doBeforeRetry((signal) -> {
+                    metrics.retried();
+                    listener.info("Trying {0} again after: {1}", file.getName(), signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        if (options.isFailFast()) {
+            return retried.then(track.map(TrackResult::written));
+        }
+        return retried
+                .then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .flatMap((e) -> {
+                    metrics.quarantined();
+                    listener.warn("Quarantined {0}: {1}", file.getName(), e.getMessage());
+                    return track.map((t) -> TrackResult.quarantined(t, file, e));
+                })
+                .switchIfEmpty(Mono.defer(() -> track.map(TrackResult::written)));
+    }
+
+    /**
+     * @return the result as it is when the track already failed, otherwise the result of the next step for it
+     */
+    private static Mono<TrackResult> unlessFailed(TrackResult result, Function<RenumberedTrack, Mono<TrackResult>> next) {
+        if (result.isFailed()) {
+            return Mono.just(result);
+        }
+        return next.apply(result.getTrack());
+    }
+
+    private Mono<TrackResult> recordInManifest(RenumberedTrack track, TrackManifest manifest, RenumberOptions options) {
+        return onScheduler(() -> {
+            manifest.record(track, tagsOf(track, options), options.isHash());
+            return TrackResult.written(track);
+        });
+    }
+
+    private Mono<RenumberedTrack> updateTrackNumber(RenumberedTrack track, RenumberOptions options) {
+        return onScheduler(() -> metrics.time(RunMetrics.Stage.TAG, track.getOutputFile(), () -> {
+            File outputFile = track.getOutputFile();
+            TrackTags tags = tagsOf(track, options);
+
+            // a hard linked output shares its bytes with the source, so it must never be changed in place
+            if (options.getCopyMode() == CopyMode.LINK || copyAudioFile.isHardLinked(outputFile, track.getInputFile())) {
+                if (tags.isTrackNumberOnly() && tagWriter.trackNumberOf(outputFile) == Integer.parseInt(track.getTrackNumber())) {
+                    metrics.numbered();
+                    return track;
+                }
+                // the copy that breaks the link is tagged before it replaces the link, so it is written once
+                File partFile = copyAudioFile.partFileOf(outputFile);
+                try {
+                    copyAudioFile.copy(outputFile, partFile);
+                    tagWriter.update(partFile, tags);
+                    copyAudioFile.moveIntoPlace(partFile, outputFile);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to write file: " + outputFile.getAbsolutePath(), e);
+                }
+                metrics.numbered();
+                return track;
+            }
+
+            tagWriter.update(outputFile, tags);
+            metrics.numbered();
+            return track;
+        }));
+    }
+
+    private Mono<RenumberedTrack> copyWithTags(RenumberedTrack track, RenumberOptions options) {
+        return onScheduler(() -> metrics.time(RunMetrics.Stage.COPY, track.getOutputFile(), () -> {
+            File outputFile = track.getOutputFile();
+            File partFile = copyAudioFile.partFileOf(outputFile);
+
+            tagWriter.copyWithTags(track.getInputFile(), partFile, tagsOf(track, options));
+            try {
+                copyAudioFile.moveIntoPlace(partFile, outputFile);
+                metrics.copied(outputFile.length());
+                metrics.numbered();
+                return track;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write file: " + outputFile.getAbsolutePath(), e);
+            }
+        }));
+    }
+
+    /**
+     * Lists the disk tracks on the scheduler while they are consumed, the time until the last one is listed is the
+     * one of the list stage.
+     */
+    private Flux<DiskTrack> listDiskTracksIn(File inputDir) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return listDiskTracks.stream(inputDir, (file, rejection) -> {
+                if (rejection != DiskTrackNameParser.Rejection.NOT_AN_AUDIO_FILE) {
+                    listener.warn("Ignoring file ({0}), since the filename does NOT match the correct pattern: {1}",
+                            file.getName(), rejection.getDescription());
+                }
+            }).doOnComplete(() -> metrics.record(RunMetrics.Stage.LIST, inputDir, System.nanoTime() - start));
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return the fields to write to the tag of the track, all of them at once
+     */
+    private static TrackTags tagsOf(RenumberedTrack track, RenumberOptions options) {
+        TrackTags tags = new TrackTags(track.getTrackNumber());
+        if (options.isWriteTotals()) {
+            tags.setTrackTotal(track.getTrackTotal()).setDisc("1", "1");
+        }
+        options.getAlbumFields().forEach(tags::setAlbumField);
+        return tags;
+    }
+
+    /**
+     * With verify, the output of an unchanged track is verified again, so a later run checks what the storage kept
+     * rather than what it was sent.
+     */
+    private Mono<TrackResult> unchanged(RenumberedTrack track, TrackManifest manifest, VerifyCopiedAudio verifyCopiedAudio,
+                                        RenumberOptions options) {
+        if (!options.isVerify()) {
+            return Mono.just(TrackResult.unchanged(track));
+        }
+        return verify(track, manifest, verifyCopiedAudio)
+                .map((result) -> result.isFailed() ? result : TrackResult.unchanged(track));
+    }
+
+    /**
+     * A track that fails is forgotten by the manifest, the entry of a track that was only tagged again would
+     * otherwise outlive this run and the next run would not copy it again.
+     */
+    private Mono<TrackResult> verify(RenumberedTrack track, TrackManifest manifest, VerifyCopiedAudio verifyCopiedAudio) {
+        return onScheduler(() -> metrics.time(RunMetrics.Stage.VERIFY, track.getOutputFile(), () -> {
+            String failure = verifyCopiedAudio.verify(track.getInputFile(), track.getOutputFile());
+            if (failure == null) {
+                metrics.verified();
+                return TrackResult.written(track);
+            }
+            metrics.verificationFailed();
+            manifest.forget(track);
+            listener.warn("Audio of {0} does not match its source!", track.getOutputFile().getName());
+            return TrackResult.verificationFailed(track, failure);
+        }));
+    }
+
+    /**
+     * @param clone the clone of the source to move into place, or null when the source has to be copied
+     */
+    private Mono<DiskTrack> copyFileTo(DiskTrack track, File outputFile, File clone, VerifyCopiedAudio verifyCopiedAudio,
+                                       RenumberOptions options) {
+        return onScheduler(() -> metrics.time(RunMetrics.Stage.COPY, outputFile, () -> {
+            File inputFile = track.getFile();
+            File partFile = copyAudioFile.partFileOf(outputFile);
+
+            try {
+                if (options.getCopyMode() == CopyMode.CLONE) {
+                    // a clone that is gone was already moved by an attempt that failed after that
+                    if (clone != null && clone.exists()) {
+                        copyAudioFile.moveIntoPlace(clone, partFile);
+                    } else {
+                        copyAudioFile.copy(inputFile, partFile);
+                    }
+                } else if (options.getCopyMode() == CopyMode.LINK) {
+                    copyAudioFile.linkOrCopy(inputFile, partFile);
+                } else if (options.isVerify()) {
+                    verifyCopiedAudio.copy(inputFile, partFile, outputFile);
+                } else {
+                    copyAudioFile.copy(inputFile, partFile);
+                }
+                copyAudioFile.moveIntoPlace(partFile, outputFile);
+                metrics.copied(inputFile.length());
+                return track;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write file: " + outputFile.getAbsolutePath(), e);
+            }
+        }));
+    }
+
+    /**
+     * Runs the work on the scheduler, recording how long it waited for a thread and how much CPU time it used.
+     */
+    private <T> Mono<T> onScheduler(Callable<T> work) {
+        return Mono.defer(() -> {
+            long queuedAt = metrics.queued();
+            return Mono.fromCallable(() -> {
+                metrics.started(queuedAt);
+                return metrics.task(work);
+            }).subscribeOn(scheduler);
+        });
+    }
+
+    /**
+     * The tracks of an album once every one of them is listed and numbered.
+     */
+    private static class NumberedAlbum {
+        private final Map<File, RenumberedTrack> tracks = new LinkedHashMap<>();
+        private final List<RenumberedTrack> tracksToRenumber;
+        private final List<RenumberedTrack> unchangedTracks;
+
+        private NumberedAlbum(List<RenumberedTrack> tracks, List<RenumberedTrack> tracksToRenumber,
+                              List<RenumberedTrack> unchangedTracks) {
+            for (RenumberedTrack track : tracks) {
+                this.tracks.put(track.getInputFile(), track);
+            }
+            this.tracksToRenumber = tracksToRenumber;
+            this.unchangedTracks = unchangedTracks;
+        }
+
+        public Collection<RenumberedTrack> getTracks() {
+            return tracks.values();
+        }
+
+        public List<RenumberedTrack> getTracksToRenumber() {
+            return tracksToRenumber;
+        }
+
+        public List<RenumberedTrack> getUnchangedTracks() {
+            return unchangedTracks;
+        }
+
+        public RenumberedTrack trackOf(DiskTrack track) {
+            return tracks.get(track.getFile());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The files jaudiotagger parsed last, so jobs that read the same sources again do not parse their headers and tags
+ * (for an MP4 file its whole atom tree) every time.
+ * <p>
+ * A file is looked up by its path, last modified time and size, so a file that changed since it was parsed is parsed
+ * again. The cache holds at most a number of files, the one used longest ago is evicted first. A cached file is shared
+ * by every caller, so it must only be read: copy its tag before changing it.
+ */
+public class AudioFileCache {
+    public static final int DEFAULT_MAX_FILES = 64;
+
+    private final int maxFiles;
+    private final Map<Key, AudioFile> files;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AudioFileCache() {
+        this(DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param maxFiles 0 to never cache a file
+     */
+    public AudioFileCache(int maxFiles) {
+        if (maxFiles < 0) {
+            throw new IllegalArgumentException("The maximum number of files must not be negative: " + maxFiles);
+        }
+        this.maxFiles = maxFiles;
+        this.files = new LinkedHashMap<Key, AudioFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, AudioFile> eldest) {
+                return size() > AudioFileCache.this.maxFiles;
+            }
+        };
+    }
+
+    public AudioFile read(File file) {
+        Key key = new Key(file);
+        synchronized (files) {
+            AudioFile audioFile = files.get(key);
+            if (audioFile != null) {
+                hits.incrementAndGet();
+                return audioFile;
+            }
+        }
+
+        misses.incrementAndGet();
+        AudioFile audioFile;
+        try {
+            // parsed outside of the lock, two threads parsing the same file at once both get a file that is complete
+            audioFile = AudioFileIO.read(file);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed reading tag of: " + file.getName(), e);
+        }
+        if (maxFiles > 0) {
+            synchronized (files) {
+                files.put(key, audioFile);
+            }
+        }
+        return audioFile;
+    }
+
+    public int size() {
+        synchronized (files) {
+            return files.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Key {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        private Key(File file) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return lastModified == key.lastModified &&
+                    length == key.length &&
+                    path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, length);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Finds and hashes the part of an audio file that holds the audio, leaving out the tags that renumbering changes:
+ * <ul>
+ * <li>M4A: the payload of the mdat atoms</li>
+ * <li>MP3: everything between the ID3v2 tag and the ID3v1 tag</li>
+ * <li>FLAC: everything after the metadata blocks</li>
+ * <li>OGG: the bodies of the pages after the header packets, their page headers change when the comment header grows</li>
+ * </ul>
+ * Files are read through a large direct buffer per thread, so hashing runs at the speed of the disk.
+ */
+public class AudioPayload {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * @return the hex SHA-256 of the audio in the file
+     */
+    public String hashOf(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            MessageDigest digest = sha256();
+            ByteBuffer buffer = BUFFER.get();
+            for (Range range : rangesOf(file, channel)) {
+                long position = range.start;
+                long end = range.start + range.length;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new IllegalStateException("File ended before its audio did: " + file.getName());
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                    position += read;
+                }
+            }
+            return toHex(digest.digest());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed hashing the audio of: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Copies the source while hashing its audio, so the source is only read once.
+     *
+     * @return the hex SHA-256 of the audio in the source
+     */
+    public String copyAndHash(File source, File destination) throws IOException {
+        try (FileChannel input = FileChannel.open(source.toPath(), READ);
+             FileChannel output = FileChannel.open(destination.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+            List<Range> ranges = rangesOf(source, input);
+            MessageDigest digest = sha256();
+            ByteBuffer buffer = BUFFER.get();
+
+            long position = 0;
+            int rangeIndex = 0;
+            while (true) {
+                buffer.clear();
+                int read = input.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+
+                // hash the parts of this chunk that are audio
+                long chunkEnd = position + read;
+                while (rangeIndex < ranges.size()) {
+                    Range range = ranges.get(rangeIndex);
+                    long start = Math.max(position, range.start);
+                    long end = Math.min(chunkEnd, range.start + range.length);
+                    if (start < end) {
+                        buffer.limit((int) (end - position));
+                        buffer.position((int) (start - position));
+                        digest.update(buffer);
+                    }
+                    if (range.start + range.length > chunkEnd) {
+                        break;
+                    }
+                    rangeIndex++;
+                }
+
+                buffer.limit(read);
+                buffer.position(0);
+                while (buffer.hasRemaining()) {
+                    output.write(buffer, position + buffer.position());
+                }
+                position = chunkEnd;
+            }
+            output.force(false);
+
+            if (rangeIndex < ranges.size()) {
+                throw new IllegalStateException("File ended before its audio did: " + source.getName());
+            }
+            Files.setLastModifiedTime(destination.toPath(), Files.getLastModifiedTime(source.toPath()));
+            return toHex(digest.digest());
+        }
+    }
+
+    private List<Range> rangesOf(File file, FileChannel channel) throws IOException {
+        byte[] start = new byte[12];
+        ByteBuffer startBuffer = ByteBuffer.wrap(start);
+        channel.read(startBuffer, 0);
+
+        List<Range> ranges;
+        if (startBuffer.position() >= 8 && "ftyp".equals(new String(start, 4, 4, StandardCharsets.ISO_8859_1))) {
+            ranges = mp4(channel);
+        } else if (startBuffer.position() >= 4 && "fLaC".equals(new String(start, 0, 4, StandardCharsets.ISO_8859_1))) {
+            ranges = flac(channel);
+        } else if (startBuffer.position() >= 4 && "OggS".equals(new String(start, 0, 4, StandardCharsets.ISO_8859_1))) {
+            ranges = ogg(channel);
+        } else if (startBuffer.position() >= 3 && "ID3".equals(new String(start, 0, 3, StandardCharsets.ISO_8859_1))
+                || startBuffer.position() >= 2 && (start[0] & 0xFF) == 0xFF && (start[1] & 0xE0) == 0xE0) {
+            ranges = mp3(channel);
+        } else {
+            ranges = null;
+        }
+
+        if (ranges == null || ranges.isEmpty()) {
+            throw new IllegalStateException("Could not find the audio in: " + file.getName());
+        }
+        return ranges;
+    }
+
+    private List<Range> mp4(FileChannel channel) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        while (position + 8 <= channel.size()) {
+            header.clear();
+            channel.read(header, position);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = channel.size() - position;
+            }
+            if (size < headerSize || position + size > channel.size()) {
+                return null;
+            }
+            if ("mdat".equals(type)) {
+                ranges.add(new Range(position + headerSize, size - headerSize));
+            }
+            position += size;
+        }
+        return ranges;
+    }
+
+    private List<Range> mp3(FileChannel channel) throws IOException {
+        long start = 0;
+        ByteBuffer header = ByteBuffer.allocate(10);
+        channel.read(header, 0);
+        if (header.get(0) == 'I' && header.get(1) == 'D' && header.get(2) == '3') {
+            int size = (header.get(6) & 0x7F) << 21 | (header.get(7) & 0x7F) << 14 | (header.get(8) & 0x7F) << 7 | header.get(9) & 0x7F;
+            boolean footer = (header.get(5) & 0x10) != 0;
+            start = 10 + size + (footer ? 10 : 0);
+        }
+
+        long end = channel.size();
+        if (end - start >= 128) {
+            ByteBuffer id3v1 = ByteBuffer.allocate(3);
+            channel.read(id3v1, end - 128);
+            if (id3v1.get(0) == 'T' && id3v1.get(1) == 'A' && id3v1.get(2) == 'G') {
+                end -= 128;
+            }
+        }
+        return end > start ? singleRange(start, end - start) : null;
+    }
+
+    private List<Range> flac(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        long position = 4;
+        while (true) {
+            header.clear();
+            if (channel.read(header, position) < 4) {
+                return null;
+            }
+            int size = (header.get(1) & 0xFF) << 16 | (header.get(2) & 0xFF) << 8 | header.get(3) & 0xFF;
+            position += 4 + size;
+            if ((header.get(0) & 0x80) != 0) {
+                return position < channel.size() ? singleRange(position, channel.size() - position) : null;
+            }
+        }
+    }
+
+    private List<Range> ogg(FileChannel channel) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(27 + 255);
+        int headerPackets = -1;
+        int packets = 0;
+        boolean inAudio = false;
+        long position = 0;
+        while (position + 27 <= channel.size()) {
+            header.clear();
+            channel.read(header, position);
+            if (header.get(0) != 'O' || header.get(1) != 'g' || header.get(2) != 'g' || header.get(3) != 'S') {
+                return null;
+            }
+            int segmentCount = header.get(26) & 0xFF;
+            int bodyLength = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                int segment = header.get(27 + i) & 0xFF;
+                bodyLength += segment;
+                if (segment < 255) {
+                    packets++;
+                }
+            }
+            long bodyStart = position + 27 + segmentCount;
+
+            if (headerPackets < 0) {
+                headerPackets = headerPacketCount(channel, bodyStart);
+                if (headerPackets < 0) {
+                    return null;
+                }
+            }
+            if (inAudio) {
+                ranges.add(new Range(bodyStart, bodyLength));
+            } else if (packets >= headerPackets) {
+                // the audio starts on the page after the last header packet
+                inAudio = true;
+            }
+            position = bodyStart + bodyLength;
+        }
+        return ranges;
+    }
+
+    /**
+     * @return how many packets at the start of the stream are headers, or -1 when it is not Vorbis or Opus
+     */
+    private int headerPacketCount(FileChannel channel, long position) throws IOException {
+        ByteBuffer packet = ByteBuffer.allocate(8);
+        channel.read(packet, position);
+        String start = new String(packet.array(), StandardCharsets.ISO_8859_1);
+        if (start.startsWith("\u0001vorbis")) {
+            return 3;
+        } else if (start.equals("OpusHead")) {
+            return 2;
+        }
+        return -1;
+    }
+
+    private static List<Range> singleRange(long start, long length) {
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(start, length));
+        return ranges;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class Range {
+        private final long start;
+        private final long length;
+
+        private Range(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+}
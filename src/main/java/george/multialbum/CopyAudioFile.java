@@ -0,0 +1,182 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The different ways of getting the bytes of an audio file into the output directory.
+ */
+public class CopyAudioFile {
+    public static final String PART_FILE_SUFFIX = ".george-part";
+    public static final String CLONE_DIR_NAME = ".george-clones";
+    private static final int MAX_FILES_PER_CLONE = 256;
+
+    public void copy(File source, File destination) throws IOException {
+        Files.copy(source.toPath(), destination.toPath(), REPLACE_EXISTING, COPY_ATTRIBUTES);
+    }
+
+    /**
+     * Clones (reflinks) the sources into the directory on file systems that support it, like btrfs, XFS and APFS, so
+     * no audio data is written. A clone is copy-on-write, so changing it later leaves its source alone. Cloning forks
+     * a cp, so a single one clones up to {@value #MAX_FILES_PER_CLONE} files instead of forking one per file.
+     *
+     * @return the sources that were cloned, each one into the directory under its own name, the others still have
+     * to be copied
+     */
+    public Set<File> cloneAll(List<File> sources, File dir) throws IOException {
+        List<String> command = cloneCommand();
+        if (command == null || sources.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Files.createDirectories(dir.toPath());
+
+        Set<File> cloned = new HashSet<>();
+        for (int start = 0; start < sources.size(); start += MAX_FILES_PER_CLONE) {
+            List<File> batch = sources.subList(start, Math.min(start + MAX_FILES_PER_CLONE, sources.size()));
+            List<String> arguments = new ArrayList<>(command);
+            batch.forEach((source) -> arguments.add(source.getAbsolutePath()));
+            arguments.add(dir.getAbsolutePath());
+
+            // cp goes on with the other files when one can not be cloned, so whatever made it is used
+            boolean succeeded = run(arguments, batch.get(0));
+            int clonedBefore = cloned.size();
+            for (File source : batch) {
+                File clone = new File(dir, source.getName());
+                if (clone.isFile() && clone.length() == source.length()) {
+                    cloned.add(source);
+                }
+            }
+            if (!succeeded && cloned.size() == clonedBefore) {
+                // the file system does not clone, so the rest would fail the same way
+                break;
+            }
+        }
+        return cloned;
+    }
+
+    /**
+     * Hard links the destination to the source, since writing to a hard link writes to the source as well, anything
+     * that changes the destination has to write a copy of it instead.
+     *
+     * @return false when the source could not be linked (i.e. it is on another file system) and a regular copy was
+     * made instead
+     */
+    public boolean linkOrCopy(File source, File destination) throws IOException {
+        try {
+            Files.deleteIfExists(destination.toPath());
+            Files.createLink(destination.toPath(), source.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            copy(source, destination);
+            return false;
+        }
+    }
+
+    /**
+     * Tells if the file shares its bytes with another one, so changing it in place would change that one too. Whether
+     * it is a link to the source is known on every file system that has hard links, by comparing the file keys. Links
+     * to any other file are only known where the file system has a link count to read.
+     */
+    public boolean isHardLinked(File file, File source) {
+        try {
+            if (source.exists() && Files.isSameFile(file.toPath(), source.toPath())) {
+                return true;
+            }
+        } catch (IOException e) {
+            // the link count below still tells
+        }
+
+        try {
+            Object linkCount = Files.getAttribute(file.toPath(), "unix:nlink");
+            return linkCount instanceof Integer && (Integer) linkCount > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The hidden file next to the destination that it is written to first, so a run that dies halfway through never
+     * leaves a half written destination behind. It keeps the extension of the destination, so tag writers still
+     * know what format it is.
+     */
+    public File partFileOf(File destination) {
+        String name = destination.getName();
+        return new File(destination.getParentFile(),
+                "." + FilenameUtils.getBaseName(name) + PART_FILE_SUFFIX + "." + FilenameUtils.getExtension(name));
+    }
+
+    /**
+     * @return the destination a part file is written for, or the file itself when it is no part file
+     */
+    public static File destinationOf(File file) {
+        String name = file.getName();
+        int suffix = name.lastIndexOf(PART_FILE_SUFFIX + ".");
+        if (!name.startsWith(".") || suffix < 1) {
+            return file;
+        }
+        String extension = name.substring(suffix + PART_FILE_SUFFIX.length() + 1);
+        String baseName = name.substring(1, suffix);
+        return new File(file.getParentFile(), extension.isEmpty() ? baseName : baseName + "." + extension);
+    }
+
+    public void moveIntoPlace(File partFile, File destination) throws IOException {
+        Files.move(partFile.toPath(), destination.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the part files and clones left behind by a run that died.
+     */
+    public void deletePartFiles(File dir) throws IOException {
+        FileUtils.deleteDirectory(new File(dir, CLONE_DIR_NAME));
+        File[] partFiles = dir.listFiles((file) -> file.getName().startsWith(".") && file.getName().contains(PART_FILE_SUFFIX + "."));
+        if (partFiles == null) {
+            return;
+        }
+        for (File partFile : partFiles) {
+            Files.deleteIfExists(partFile.toPath());
+        }
+    }
+
+    /**
+     * @return the cp that clones the files given after it into the directory given last, or null when the operating
+     * system has none
+     */
+    private List<String> cloneCommand() {
+        String osName = System.getProperty("os.name", "");
+        if (osName.startsWith("Linux")) {
+            return Arrays.asList("cp", "--reflink=always", "--preserve=timestamps");
+        } else if (osName.startsWith("Mac OS X")) {
+            return Arrays.asList("cp", "-c", "-p");
+        }
+        return null;
+    }
+
+    private boolean run(List<String> command, File firstSource) throws IOException {
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .start();
+            IOUtils.copy(process.getInputStream(), NullOutputStream.NULL_OUTPUT_STREAM);
+            return process.waitFor() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning: " + firstSource.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package george.multialbum;
+
+import java.util.Locale;
+
+public enum CopyMode {
+    /**
+     * Copy the file as-is and then update the track number of the copy.
+     */
+    COPY,
+    /**
+     * Read the source once and write the destination once with the new track number already in place.
+     */
+    REWRITE,
+    /**
+     * Clone (reflink) the files of an album on file systems that support it, with a single cp once the album is
+     * listed, and then update the track number of each clone, falling back to a regular copy for a file that can not
+     * be cloned.
+     */
+    CLONE,
+    /**
+     * Hard link the file and only break the link when the track number has to change, falling back to a regular
+     * copy when the file can not be linked. Breaking the link writes a tagged copy, so a file whose track number
+     * changes is written once, as with {@link #COPY}. Only files that already have the right track number, like on a
+     * re-run, are never written.
+     */
+    LINK;
+
+    public static CopyMode fromName(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
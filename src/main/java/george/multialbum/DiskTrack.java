@@ -1,18 +1,43 @@
 package george.multialbum;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Objects;
 
 public class DiskTrack implements Comparable<DiskTrack> {
+    private static final DiskTrackNameParser ANY_EXTENSION = new DiskTrackNameParser(Collections.emptyList());
+
     private final File file;
-    private final Integer disk;
-    private final Integer track;
+    private final File archive;
+    private final String entryName;
+    private final int disk;
+    private final int track;
 
     public DiskTrack(File file) {
+        this(file, ANY_EXTENSION.parse(file.getName()));
+    }
+
+    public DiskTrack(File file, DiskTrackNameParser.Result name) {
+        this(file, null, null, name);
+    }
+
+    /**
+     * A disk track stored in an archive, named by the path of its entry. Its file is the archive followed by that
+     * path, which does not exist on disk but still has the name of the track.
+     */
+    public DiskTrack(File archive, String entryName, DiskTrackNameParser.Result name) {
+        this(new File(archive, entryName), archive, entryName, name);
+    }
+
+    private DiskTrack(File file, File archive, String entryName, DiskTrackNameParser.Result name) {
+        if (!name.isDiskTrack()) {
+            throw new IllegalArgumentException("Not a disk track (" + file.getName() + "), since " + name.getRejection().getDescription());
+        }
         this.file = file;
-        String fileName = file.getName();
-        disk = Integer.valueOf(fileName.replaceAll("(^.+?)-.+", "$1"));
-        track = Integer.valueOf(fileName.replaceAll("^.+?-(.+?) .+", "$1"));
+        this.archive = archive;
+        this.entryName = entryName;
+        this.disk = name.getDisk();
+        this.track = name.getTrack();
     }
 
     @Override
@@ -40,6 +65,20 @@ public class DiskTrack implements Comparable<DiskTrack> {
         return file;
     }
 
+    /**
+     * @return the archive the track is stored in, or null when it is a file of its own
+     */
+    public File getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return the path of the track inside its archive, or null when it is a file of its own
+     */
+    public String getEntryName() {
+        return entryName;
+    }
+
     @Override
     public String toString() {
         return "DiskTrack{" +
@@ -51,9 +90,9 @@ public class DiskTrack implements Comparable<DiskTrack> {
 
     @Override
     public int compareTo(DiskTrack o) {
-        int result = disk.compareTo(o.disk);
+        int result = Integer.compare(disk, o.disk);
         if (result == 0) {
-            return track.compareTo(o.track);
+            return Integer.compare(track, o.track);
         }
         return result;
     }
@@ -0,0 +1,148 @@
+package george.multialbum;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses file names like "1-01 title.m4a" into their disk and track number in a single pass, without regular
+ * expressions, substrings or boxing.
+ */
+public class DiskTrackNameParser {
+    public enum Rejection {
+        NOT_AN_AUDIO_FILE("it does not have an audio file extension"),
+        NO_DISK_NUMBER("it does not start with a disk number"),
+        NO_TRACK_NUMBER("it does not have a '-' and a track number after the disk number"),
+        NO_TITLE("it does not have a space and a title after the track number"),
+        NUMBER_TOO_LARGE("its disk or track number is too large");
+
+        private final String description;
+
+        Rejection(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public static class Result {
+        private static final Map<Rejection, Result> REJECTIONS = new EnumMap<>(Rejection.class);
+
+        static {
+            for (Rejection rejection : Rejection.values()) {
+                REJECTIONS.put(rejection, new Result(0, 0, rejection));
+            }
+        }
+
+        private final int disk;
+        private final int track;
+        private final Rejection rejection;
+
+        private Result(int disk, int track, Rejection rejection) {
+            this.disk = disk;
+            this.track = track;
+            this.rejection = rejection;
+        }
+
+        public boolean isDiskTrack() {
+            return rejection == null;
+        }
+
+        public int getDisk() {
+            return disk;
+        }
+
+        public int getTrack() {
+            return track;
+        }
+
+        /**
+         * @return why the name is not a disk track, or null when it is one
+         */
+        public Rejection getRejection() {
+            return rejection;
+        }
+    }
+
+    private final String[] extensions;
+
+    /**
+     * @param extensions the audio file extensions (without the '.') to accept, any extension is accepted when empty
+     */
+    public DiskTrackNameParser(Collection<String> extensions) {
+        List<String> copy = new ArrayList<>(extensions);
+        this.extensions = copy.toArray(new String[0]);
+    }
+
+    public Result parse(String fileName) {
+        int end = fileName.length();
+        if (extensions.length > 0) {
+            int extensionStart = extensionStart(fileName);
+            if (extensionStart < 0) {
+                return Result.REJECTIONS.get(Rejection.NOT_AN_AUDIO_FILE);
+            }
+            end = extensionStart - 1;
+        }
+
+        int position = 0;
+        long disk = 0;
+        while (position < end && isDigit(fileName.charAt(position))) {
+            disk = disk * 10 + (fileName.charAt(position) - '0');
+            if (disk > Integer.MAX_VALUE) {
+                return Result.REJECTIONS.get(Rejection.NUMBER_TOO_LARGE);
+            }
+            position++;
+        }
+        if (position == 0) {
+            return Result.REJECTIONS.get(Rejection.NO_DISK_NUMBER);
+        }
+
+        if (position >= end || fileName.charAt(position) != '-') {
+            return Result.REJECTIONS.get(Rejection.NO_TRACK_NUMBER);
+        }
+        position++;
+
+        int trackStart = position;
+        long track = 0;
+        while (position < end && isDigit(fileName.charAt(position))) {
+            track = track * 10 + (fileName.charAt(position) - '0');
+            if (track > Integer.MAX_VALUE) {
+                return Result.REJECTIONS.get(Rejection.NUMBER_TOO_LARGE);
+            }
+            position++;
+        }
+        if (position == trackStart) {
+            return Result.REJECTIONS.get(Rejection.NO_TRACK_NUMBER);
+        }
+
+        // a space followed by at least one character of title
+        if (position + 1 >= end || fileName.charAt(position) != ' ') {
+            return Result.REJECTIONS.get(Rejection.NO_TITLE);
+        }
+
+        return new Result((int) disk, (int) track, null);
+    }
+
+    /**
+     * @return where the extension starts (after the '.'), or -1 when the name does not end with one of the extensions
+     */
+    private int extensionStart(String fileName) {
+        for (String extension : extensions) {
+            int extensionStart = fileName.length() - extension.length();
+            if (extensionStart > 0
+                    && fileName.charAt(extensionStart - 1) == '.'
+                    && fileName.regionMatches(extensionStart, extension, 0, extension.length())) {
+                return extensionStart;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
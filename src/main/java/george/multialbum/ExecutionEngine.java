@@ -0,0 +1,84 @@
+package george.multialbum;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools the copy and tag work can run on.
+ */
+public enum ExecutionEngine {
+    /**
+     * Reactor's parallel scheduler, one single threaded worker per thread. Sized for CPU bound work.
+     */
+    PARALLEL {
+        @Override
+        public Scheduler createScheduler(int poolSize) {
+            return Schedulers.newParallel(THREAD_NAME, poolSize, true);
+        }
+    },
+    /**
+     * Reactor's bounded elastic scheduler, meant for blocking I/O. Threads are created as needed up to the pool
+     * size and are let go of again when idle.
+     */
+    BOUNDED_ELASTIC {
+        @Override
+        public Scheduler createScheduler(int poolSize) {
+            return Schedulers.newBoundedElastic(poolSize, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, THREAD_NAME, 60, true);
+        }
+    },
+    /**
+     * A fixed size thread pool sharing one queue, so a slow file never holds up the files queued behind it.
+     */
+    FIXED {
+        @Override
+        public Scheduler createScheduler(int poolSize) {
+            return Schedulers.fromExecutorService(Executors.newFixedThreadPool(poolSize, new DaemonThreadFactory()), THREAD_NAME);
+        }
+    },
+    /**
+     * One virtual thread per task (JDK 21 or newer), the pool size is ignored.
+     */
+    VIRTUAL {
+        @Override
+        public Scheduler createScheduler(int poolSize) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return Schedulers.fromExecutorService((ExecutorService) factory.invoke(null), THREAD_NAME);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Virtual threads need Java 21 or newer, this is Java " + System.getProperty("java.version"), e);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed creating virtual thread executor", e);
+            }
+        }
+    };
+
+    private static final String THREAD_NAME = "george";
+
+    public abstract Scheduler createScheduler(int poolSize);
+
+    public static ExecutionEngine fromName(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
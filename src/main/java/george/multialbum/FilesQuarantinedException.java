@@ -0,0 +1,10 @@
+package george.multialbum;
+
+import java.io.File;
+import java.util.Map;
+
+public class FilesQuarantinedException extends RuntimeException {
+    public FilesQuarantinedException(Map<File, String> files) {
+        super(files.size() + " file(s) failed and were quarantined: " + files.keySet());
+    }
+}
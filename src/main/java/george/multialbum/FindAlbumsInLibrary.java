@@ -0,0 +1,61 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Walks a library directory looking for every directory that holds the files of a multiple disk album. Each album
+ * is paired with a directory in the output library at the same relative path. The output library may be inside the
+ * library, it is skipped, but not the other way around.
+ */
+public class FindAlbumsInLibrary {
+    private final Predicate<Path> isDiskTrack;
+
+    public FindAlbumsInLibrary(Predicate<Path> isDiskTrack) {
+        this.isDiskTrack = isDiskTrack;
+    }
+
+    public List<Album> find(File libraryDir, File outputLibraryDir) {
+        Path library = libraryDir.toPath().toAbsolutePath().normalize();
+        Path outputLibrary = outputLibraryDir.toPath().toAbsolutePath().normalize();
+        if (library.startsWith(outputLibrary)) {
+            // every album would be inside the output library, and be skipped
+            throw new IllegalArgumentException("The library can not be the output directory or inside of it: " +
+                    libraryDir.getAbsolutePath());
+        }
+
+        try (Stream<Path> dirs = Files.walk(library)) {
+            return dirs
+                    .filter(Files::isDirectory)
+                    .filter((dir) -> !dir.startsWith(outputLibrary))
+                    .filter(this::containsDiskTracks)
+                    .sorted()
+                    .map((dir) -> new Album(dir.toFile(), outputLibrary.resolve(library.relativize(dir)).toFile()))
+                    .collect(toList());
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed looking for albums in: " + libraryDir.getAbsolutePath(), e);
+        }
+    }
+
+    private boolean containsDiskTracks(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (isDiskTrack.test(file) && Files.isRegularFile(file)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package george.multialbum;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values (usually durations in nanoseconds) in buckets that are at most 1/16th wider than the values in them,
+ * so percentiles can be read back within about 6% from a fixed amount of memory, no matter how many values were
+ * recorded.
+ * <p>
+ * Histograms are merged by adding up their buckets, which keeps the percentiles of the merged histogram exact to
+ * the same error, unlike averaging the percentiles of each one.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(indexOf(recorded));
+        count.incrementAndGet();
+        total.addAndGet(recorded);
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount > 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.addAndGet(other.count.get());
+        total.addAndGet(other.total.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Adds the values of a histogram that was written out bucket by bucket, like the one in the report of another run.
+     *
+     * @param bucketCounts the number of values in each bucket, by {@link #getCountAt(int) index}
+     */
+    public void merge(long[] bucketCounts, long total, long max) {
+        long values = 0;
+        for (int i = 0; i < Math.min(BUCKETS, bucketCounts.length); i++) {
+            if (bucketCounts[i] > 0) {
+                counts.addAndGet(i, bucketCounts[i]);
+                values += bucketCounts[i];
+            }
+        }
+        count.addAndGet(values);
+        this.total.addAndGet(total);
+        this.max.accumulateAndGet(max, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long values = count.get();
+        return values == 0 ? 0 : (double) total.get() / values;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value that is equivalent to the value at the percentile, or 0 when nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long values = count.get();
+        if (values == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * values));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return the number of values in the bucket, for writing the histogram out so it can be merged later
+     */
+    public long getCountAt(int index) {
+        return counts.get(index);
+    }
+
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return lowestValueOf(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,83 @@
+package george.multialbum;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Lists the disk tracks in a directory one entry at a time, so directories with a huge number of files never have to
+ * be held in memory as a whole, unlike {@link File#listFiles()}.
+ * <p>
+ * The attributes of each entry are read once by the directory walk, on Windows they even come with the listing
+ * itself, instead of asking for every file whether it is a directory.
+ */
+public class ListDiskTracks {
+    private final DiskTrackNameParser diskTrackNameParser;
+
+    public ListDiskTracks(DiskTrackNameParser diskTrackNameParser) {
+        this.diskTrackNameParser = diskTrackNameParser;
+    }
+
+    /**
+     * @param onSkipped called with every file that is not a disk track and why, directories are left out
+     */
+    public List<DiskTrack> list(File dir, BiConsumer<File, DiskTrackNameParser.Rejection> onSkipped) {
+        return stream(dir, onSkipped).collectList().block();
+    }
+
+    /**
+     * Lists the disk tracks stored in an archive by the names of its entries, wherever they are in the archive. Only
+     * the first of several entries with the same name is listed, since they would end up in the same output file.
+     *
+     * @param onSkipped called with every entry that is not a disk track and why, as the archive followed by its path
+     */
+    public List<DiskTrack> list(AlbumArchive archive, BiConsumer<File, DiskTrackNameParser.Rejection> onSkipped) throws IOException {
+        Set<String> names = new HashSet<>();
+        List<DiskTrack> tracks = new ArrayList<>();
+        for (String entryName : archive.list()) {
+            File entry = new File(archive.getFile(), entryName);
+            DiskTrackNameParser.Result name = diskTrackNameParser.parse(entry.getName());
+            if (!name.isDiskTrack()) {
+                onSkipped.accept(entry, name.getRejection());
+            } else if (names.add(entry.getName())) {
+                tracks.add(new DiskTrack(archive.getFile(), entryName, name));
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Lists the disk tracks lazily, the directory is read while the tracks are consumed and closed once the flux
+     * terminates or is cancelled. The directory is read on the thread that subscribes.
+     *
+     * @param onSkipped called with every file that is not a disk track and why, directories are left out
+     */
+    public Flux<DiskTrack> stream(File dir, BiConsumer<File, DiskTrackNameParser.Rejection> onSkipped) {
+        return Flux.using(() -> Files.find(dir.toPath(), 1, (path, attributes) -> attributes.isRegularFile(), FileVisitOption.FOLLOW_LINKS),
+                (files) -> Flux.fromStream(files).handle((Path path, SynchronousSink<DiskTrack> sink) -> {
+                    DiskTrackNameParser.Result name = diskTrackNameParser.parse(path.getFileName().toString());
+                    if (name.isDiskTrack()) {
+                        sink.next(new DiskTrack(path.toFile(), name));
+                    } else {
+                        onSkipped.accept(path.toFile(), name.getRejection());
+                    }
+                }),
+                Stream::close)
+                .onErrorMap((e) -> e instanceof IOException || e instanceof UncheckedIOException,
+                        (e) -> new IllegalStateException("For some reason we are unable to get the list of files on disk.\n" +
+                                dir.getAbsolutePath() +
+                                "\n ¯\\_(ツ)_/¯", e));
+    }
+}
@@ -0,0 +1,246 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Overwrites the track number and total stored in the moov/udta/meta/ilst/trkn atom, and the disc number and total
+ * in the disk atom next to it, of an MP4 file without rewriting the file.
+ * <p>
+ * The trkn and disk atoms always have the same size, so changing the numbers never changes the layout of the file.
+ * Only the headers of the atoms on the way to them are read and only the 2 to 4 bytes of each number are written, with
+ * positional reads and writes, so the (usually much larger) audio data is never touched.
+ */
+public class PatchTrackNumberInMp4Atom {
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_HEADER_SIZE = 16;
+    private static final int FULL_ATOM_FIELDS_SIZE = 4;
+    private static final int DATA_ATOM_FIELDS_SIZE = 8;
+    private static final int NUMBER_OFFSET = 2;
+    private static final int MAX_NUMBER = 0xFFFF;
+
+    /**
+     * @return false when the file has no trkn atom to patch, in which case the file was left untouched
+     */
+    public boolean patch(File file, int trackNumber) {
+        return patch(file, new TrackTags(String.valueOf(trackNumber)));
+    }
+
+    /**
+     * @return false when the file has no trkn atom, or no disk atom while the disc is to be written, or when the tags
+     * have fields that are not numbers, in which case the file was left untouched
+     */
+    public boolean patch(File file, TrackTags tags) {
+        if (!tags.getAlbumFields().isEmpty()) {
+            return false;
+        }
+        int trackNumber = numberOf(tags.getTrackNumber());
+        int trackTotal = numberOf(tags.getTrackTotal());
+        int discNumber = numberOf(tags.getDiscNumber());
+        int discTotal = numberOf(tags.getDiscTotal());
+        if (trackNumber < 0 || trackNumber > MAX_NUMBER || trackTotal > MAX_NUMBER || discNumber > MAX_NUMBER || discTotal > MAX_NUMBER) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ, WRITE)) {
+            Atom moov = findAtom(channel, 0, channel.size(), "moov");
+            if (moov == null) {
+                return false;
+            }
+
+            long trackPosition = findNumbers(channel, moov, "trkn", trackTotal < 0 ? 1 : 2);
+            long discPosition = discNumber < 0 && discTotal < 0 ? 0 : findNumbers(channel, moov, "disk", discTotal < 0 ? 1 : 2);
+            if (trackPosition < 0 || discPosition < 0) {
+                return false;
+            }
+
+            putNumbers(channel, trackPosition, trackNumber, trackTotal);
+            if (discPosition > 0) {
+                putNumbers(channel, discPosition, discNumber, discTotal);
+            }
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed patching track number (" + trackNumber + ") for: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * @return the track number stored in the trkn atom, or -1 when the file does not have one
+     */
+    public int trackNumberOf(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            Atom moov = findAtom(channel, 0, channel.size(), "moov");
+            if (moov == null) {
+                return -1;
+            }
+
+            long trackNumberPosition = findNumbers(channel, moov, "trkn", 1);
+            if (trackNumberPosition < 0) {
+                return -1;
+            }
+            ByteBuffer number = read(channel, trackNumberPosition, 2);
+            return number.remaining() < 2 ? -1 : number.getShort(0) & 0xFFFF;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed reading track number of: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Both trkn and disk hold a number followed by the total, as 16 bit numbers.
+     *
+     * @param count how many of the numbers have to be there
+     * @return the position of the first number in the file, or -1 when there is none
+     */
+    private long findNumbers(FileChannel channel, Atom moov, String type, int count) throws IOException {
+        Atom udta = findChild(channel, moov, "udta");
+        Atom meta = udta == null ? null : findChild(channel, udta, "meta");
+        Atom ilst = meta == null ? null : findChild(channel, metaChildren(channel, meta), "ilst");
+        Atom numbers = ilst == null ? null : findChild(channel, ilst, type);
+        Atom data = numbers == null ? null : findChild(channel, numbers, "data");
+        if (data == null) {
+            return -1;
+        }
+
+        long position = data.payloadStart() + DATA_ATOM_FIELDS_SIZE + NUMBER_OFFSET;
+        return position + 2 * count > data.end() ? -1 : position;
+    }
+
+    /**
+     * Writes only the bytes of the numbers, 2 to 4 of them.
+     *
+     * @param total left as it is when negative
+     */
+    private void putNumbers(FileChannel channel, long position, int number, int total) throws IOException {
+        if (number >= 0) {
+            write(channel, position, (short) number);
+        }
+        if (total >= 0) {
+            write(channel, position + 2, (short) total);
+        }
+    }
+
+    private void write(FileChannel channel, long position, short value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(2).putShort(0, value);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * @return the bytes at the position, fewer than asked for when the file ends before them
+     */
+    private ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        // a positional read may return fewer bytes than asked for before the end of the file
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the number, -1 when there is none, or a number too big to fit when it is not a number
+     */
+    private int numberOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * The iTunes meta atom is a "full" atom with version and flags in front of its children, the QuickTime one is not.
+     */
+    private Atom metaChildren(FileChannel channel, Atom meta) throws IOException {
+        long firstChildType = meta.payloadStart() + 4;
+        if (firstChildType + 4 <= meta.end()) {
+            String type = typeAt(read(channel, firstChildType, 4), 0);
+            if (type.equals("hdlr") || type.equals("ilst")) {
+                return meta;
+            }
+        }
+        return new Atom(meta.start, meta.size, meta.headerSize + FULL_ATOM_FIELDS_SIZE);
+    }
+
+    private Atom findChild(FileChannel channel, Atom parent, String type) throws IOException {
+        return findAtom(channel, parent.payloadStart(), parent.end(), type);
+    }
+
+    /**
+     * Reads the headers of the atoms between start and end, skipping over their payloads.
+     */
+    private Atom findAtom(FileChannel channel, long start, long end, String type) throws IOException {
+        long position = start;
+
+        while (position + HEADER_SIZE <= end) {
+            ByteBuffer header = read(channel, position, (int) Math.min(LARGE_HEADER_SIZE, end - position));
+            if (header.remaining() < HEADER_SIZE) {
+                return null;
+            }
+
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = HEADER_SIZE;
+            if (size == 1) {
+                if (header.remaining() < LARGE_HEADER_SIZE) {
+                    return null;
+                }
+                size = header.getLong(HEADER_SIZE);
+                headerSize = LARGE_HEADER_SIZE;
+            } else if (size == 0) {
+                size = end - position;
+            }
+
+            if (size < headerSize || position + size > end) {
+                return null;
+            }
+
+            if (typeAt(header, 4).equals(type)) {
+                return new Atom(position, size, headerSize);
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private String typeAt(ByteBuffer buffer, int position) {
+        byte[] type = new byte[4];
+        for (int i = 0; i < type.length; i++) {
+            type[i] = buffer.get(position + i);
+        }
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    private static class Atom {
+        private final long start;
+        private final long size;
+        private final int headerSize;
+
+        private Atom(long start, long size, int headerSize) {
+            this.start = start;
+            this.size = size;
+            this.headerSize = headerSize;
+        }
+
+        private long payloadStart() {
+            return start + headerSize;
+        }
+
+        private long end() {
+            return start + size;
+        }
+    }
+}
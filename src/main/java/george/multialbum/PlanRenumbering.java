@@ -0,0 +1,216 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Works out what a run would do without copying or tagging anything: which global track number every disk track
+ * gets, which files are skipped and why, and how many bytes would be copied.
+ * <p>
+ * The runtime is estimated by reading a handful of the files spread over the library and timing it, so it reflects
+ * the storage the library is actually on. Reading is what bounds a copy from a network share, so the estimate is
+ * the total bytes at the measured read throughput. An album in an archive is sized by the headers of its entries and
+ * sampled by reading the archive itself, since its tracks are not files of their own.
+ * <p>
+ * Albums are planned one at a time and handed over as soon as they are, only the totals of the run are kept, so a
+ * plan of a large library does not hold every track of it.
+ */
+public class PlanRenumbering {
+    private static final int SAMPLE_FILES = 5;
+    private static final long SAMPLE_BYTES = 256L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final ListDiskTracks listDiskTracks;
+
+    public PlanRenumbering(ListDiskTracks listDiskTracks) {
+        this.listDiskTracks = listDiskTracks;
+    }
+
+    /**
+     * @param onAlbum called with the plan of every album once it is planned, in the order of the albums
+     * @return the totals over all albums
+     */
+    public Plan plan(List<Album> albums, Consumer<AlbumPlan> onAlbum) {
+        Plan plan = new Plan();
+        Sample sample = new Sample();
+        for (Album album : albums) {
+            AlbumPlan albumPlan = planAlbum(album);
+            onAlbum.accept(albumPlan);
+
+            plan.albums++;
+            plan.tracks += albumPlan.getTracks().size();
+            plan.totalBytes += albumPlan.getTotalBytes();
+            if (AlbumArchive.isArchive(album.getInputDir())) {
+                sample.offer(album.getInputDir());
+            } else {
+                for (RenumberedTrack track : albumPlan.getTracks()) {
+                    sample.offer(track.getInputFile());
+                }
+            }
+        }
+
+        plan.bytesPerSecond = sampleThroughput(sample.files);
+        return plan;
+    }
+
+    private AlbumPlan planAlbum(Album album) {
+        File inputDir = album.getInputDir();
+        Map<File, String> skipped = new LinkedHashMap<>();
+        BiConsumer<File, DiskTrackNameParser.Rejection> onSkipped = (file, rejection) -> skipped.put(file, rejection.getDescription());
+        if (!AlbumArchive.isArchive(inputDir)) {
+            List<DiskTrack> tracks = listDiskTracks.list(inputDir, onSkipped);
+            long bytes = 0;
+            for (DiskTrack track : tracks) {
+                bytes += track.getFile().length();
+            }
+            return new AlbumPlan(album, RenumberedTrack.number(tracks, album.getOutputDir()), skipped, bytes);
+        }
+
+        try (AlbumArchive archive = AlbumArchive.open(inputDir)) {
+            List<DiskTrack> tracks = listDiskTracks.list(archive, onSkipped);
+            Map<String, Long> sizes = archive.sizes();
+            long bytes = 0;
+            for (DiskTrack track : tracks) {
+                bytes += sizes.get(track.getEntryName());
+            }
+            return new AlbumPlan(album, RenumberedTrack.number(tracks, album.getOutputDir()), skipped, bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed listing archive: " + inputDir.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return the bytes per second reading a sample of the files, or 0 when nothing could be read
+     */
+    private double sampleThroughput(List<File> files) {
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < files.size() && bytes < SAMPLE_BYTES; i++) {
+            try (FileChannel channel = FileChannel.open(files.get(i).toPath(), READ)) {
+                long position = 0;
+                int read;
+                while (bytes < SAMPLE_BYTES && (read = channel.read(buffer, position)) >= 0) {
+                    bytes += read;
+                    position += read;
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // leave the file out of the sample, the run will report it
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        return bytes == 0 || nanos == 0 ? 0 : bytes * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * Picks a handful of files at random from however many are offered, each as likely as the others, without keeping
+     * the rest (reservoir sampling).
+     */
+    private static class Sample {
+        private final List<File> files = new ArrayList<>();
+        private final Random random = new Random();
+        private long offered;
+
+        private void offer(File file) {
+            offered++;
+            if (files.size() < SAMPLE_FILES) {
+                files.add(file);
+            } else {
+                long index = (long) (random.nextDouble() * offered);
+                if (index < SAMPLE_FILES) {
+                    files.set((int) index, file);
+                }
+            }
+        }
+    }
+
+    public static class Plan {
+        private int albums;
+        private int tracks;
+        private long totalBytes;
+        private double bytesPerSecond;
+
+        private Plan() {
+        }
+
+        public int getAlbumCount() {
+            return albums;
+        }
+
+        public int getTrackCount() {
+            return tracks;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * @return the read throughput measured on a sample of the files, 0 when there was nothing to sample
+         */
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        /**
+         * @return how long copying every file would take at the measured throughput, or null when it is unknown
+         */
+        public Duration getEstimatedRuntime() {
+            if (bytesPerSecond <= 0) {
+                return null;
+            }
+            return Duration.ofMillis((long) (getTotalBytes() / bytesPerSecond * 1000));
+        }
+    }
+
+    public static class AlbumPlan {
+        private final Album album;
+        private final List<RenumberedTrack> tracks;
+        private final Map<File, String> skipped;
+        private final long totalBytes;
+
+        private AlbumPlan(Album album, List<RenumberedTrack> tracks, Map<File, String> skipped, long totalBytes) {
+            this.album = album;
+            this.tracks = Collections.unmodifiableList(tracks);
+            this.skipped = Collections.unmodifiableMap(skipped);
+            this.totalBytes = totalBytes;
+        }
+
+        public Album getAlbum() {
+            return album;
+        }
+
+        public List<RenumberedTrack> getTracks() {
+            return tracks;
+        }
+
+        /**
+         * @return why each file that is not a disk track is skipped, by file
+         */
+        public Map<File, String> getSkipped() {
+            return skipped;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+}
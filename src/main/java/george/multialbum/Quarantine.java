@@ -0,0 +1,70 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The files that kept failing, with why, so a run can finish every other file instead of stopping at the first bad
+ * one. A quarantined file is left out of the manifest, so the next run tries it again.
+ */
+public class Quarantine {
+    public static final String FILE_NAME = ".george-quarantine";
+
+    private final Map<File, String> files = new ConcurrentSkipListMap<>();
+
+    /**
+     * Tells if trying again might help: I/O errors, like a network share that dropped a request, are transient, but a
+     * file that does not exist, can not be accessed or has a broken tag fails the same way every time.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSuchFileException || cause instanceof FileNotFoundException || cause instanceof AccessDeniedException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(File file, Throwable error) {
+        StringBuilder reason = new StringBuilder(String.valueOf(error.getMessage()));
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            reason.append(": ").append(cause.getMessage());
+        }
+        files.put(file, reason.toString().replaceAll("[\t\r\n]+", " "));
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    /**
+     * @return why each file was quarantined, by file
+     */
+    public Map<File, String> getFiles() {
+        return files;
+    }
+
+    /**
+     * Writes a line with the path and the reason, separated by a tab, for every file.
+     */
+    public void writeTo(File file) {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<File, String> entry : files.entrySet()) {
+                writer.write(entry.getKey().getAbsolutePath() + "\t" + entry.getValue() + "\n");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed writing quarantine: " + file.getAbsolutePath(), e);
+        }
+    }
+}
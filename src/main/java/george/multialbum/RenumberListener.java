@@ -0,0 +1,34 @@
+package george.multialbum;
+
+/**
+ * Hears how the albums of an {@link AlbumRenumberer} are coming along, to log it or show progress. Messages are
+ * {@link java.text.MessageFormat} patterns along with their arguments. Every method does nothing unless overridden.
+ * <p>
+ * The listener is called from the threads of the scheduler, for one album as much as for several albums renumbered at
+ * the same time, so it has to be thread-safe.
+ */
+public interface RenumberListener {
+    RenumberListener NONE = new RenumberListener() {
+    };
+
+    default void info(String pattern, Object... arguments) {
+    }
+
+    default void warn(String pattern, Object... arguments) {
+    }
+
+    /**
+     * Once the album is listed and numbered, before any track of it is done.
+     */
+    default void numbered(Album album, int tracksToCopy, int tracksToRenumber) {
+    }
+
+    default void copied(Album album, RenumberedTrack track) {
+    }
+
+    /**
+     * Once the track is tagged with its new number, copied tracks included.
+     */
+    default void renumbered(Album album, RenumberedTrack track) {
+    }
+}
@@ -0,0 +1,148 @@
+package george.multialbum;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class RenumberOptions {
+    private CopyMode copyMode = CopyMode.COPY;
+    private int tagConcurrency = Runtime.getRuntime().availableProcessors();
+    private int maxConcurrency = Storage.LOCAL.getMaxConcurrency();
+    private boolean hash;
+    private boolean force;
+    private boolean resume;
+    private boolean verify;
+    private boolean writeTotals;
+    private int retries = 2;
+    private Duration retryBackoff = Duration.ofMillis(200);
+    private boolean failFast;
+    private final Map<TrackTags.AlbumField, String> albumFields = new EnumMap<>(TrackTags.AlbumField.class);
+
+    public CopyMode getCopyMode() {
+        return copyMode;
+    }
+
+    public void setCopyMode(CopyMode copyMode) {
+        this.copyMode = copyMode;
+    }
+
+    public int getTagConcurrency() {
+        return tagConcurrency;
+    }
+
+    public void setTagConcurrency(int tagConcurrency) {
+        this.tagConcurrency = tagConcurrency;
+    }
+
+    /**
+     * The maximum number of files being copied at the same time.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Whether sources are hashed to detect changes that kept the same size and last modified time.
+     */
+    public boolean isHash() {
+        return hash;
+    }
+
+    public void setHash(boolean hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Whether every track is copied and numbered again, no matter what the manifest says.
+     */
+    public boolean isForce() {
+        return force;
+    }
+
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    /**
+     * Whether the tracks a run that died already finished are kept, instead of being copied and numbered again.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Whether the audio of every output file is checked against its source once its track number is written.
+     */
+    public boolean isVerify() {
+        return verify;
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    /**
+     * Whether the track total and the disc, which is always 1 of 1 once the disks are collapsed, are written along
+     * with the track number.
+     */
+    public boolean isWriteTotals() {
+        return writeTotals;
+    }
+
+    public void setWriteTotals(boolean writeTotals) {
+        this.writeTotals = writeTotals;
+    }
+
+    /**
+     * The album level fields written to every track, fields that are not set are left as they are.
+     */
+    public Map<TrackTags.AlbumField, String> getAlbumFields() {
+        return Collections.unmodifiableMap(albumFields);
+    }
+
+    public void setAlbumField(TrackTags.AlbumField field, String value) {
+        albumFields.put(field, value);
+    }
+
+    /**
+     * How many times a file is tried again after a transient I/O error.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * How long to wait before the first retry, every next one waits twice as long.
+     */
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Whether a file that keeps failing stops the run, instead of being quarantined.
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+}
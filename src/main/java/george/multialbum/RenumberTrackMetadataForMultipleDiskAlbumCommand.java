@@ -5,44 +5,223 @@ import cli.pi.CliLog;
 import cli.pi.command.CliCommand;
 import cli.pi.command.CommandContext;
 import com.github.born2snipe.cli.CountUpToTotalPrinter;
+import com.eclipsesource.json.JsonObject;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.time.DurationFormatUtils;
 import org.kohsuke.MetaInfServices;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-import static java.util.stream.Collectors.toList;
-import static reactor.core.scheduler.Schedulers.parallel;
 
 @MetaInfServices
 public class RenumberTrackMetadataForMultipleDiskAlbumCommand extends CliCommand {
-    public static final String AUDIO_FILE_EXTENSION = "m4a";
-
-    private final Scheduler scheduler = parallel();
-    private UpdateTrackNumberInMetaData updateTrackNumberInMetaData = new UpdateTrackNumberInMetaData();
+    private AlbumRenumberer renumberer;
+    private RunResults results;
+    private TagWriter tagWriter = new UpdateTrackNumberInMetaData();
+    private final DiskTrackNameParser diskTrackNameParser = new DiskTrackNameParser(UpdateTrackNumberInMetaData.AUDIO_FILE_EXTENSIONS);
+    private final ListDiskTracks listDiskTracks = new ListDiskTracks(diskTrackNameParser);
 
     public RenumberTrackMetadataForMultipleDiskAlbumCommand() {
         argsParser.addArgument("-i", "--input-dir")
                 .metavar("PATH")
                 .required(true)
                 .dest("input")
-                .help("Path to directory to copy files from");
+                .help("Path to directory to copy files from, or to a ZIP or TAR archive (.zip, .tar, .tar.gz, .tgz) " +
+                        "holding an album, whose tracks are written to the output directory without extracting it first");
 
         argsParser.addArgument("-o", "--output-dir")
                 .metavar("PATH")
                 .required(true)
                 .dest("output")
                 .help("Path to directory to copy files to");
+
+        argsParser.addArgument("--tag-concurrency")
+                .metavar("N")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(Runtime.getRuntime().availableProcessors())
+                .dest("tagConcurrency")
+                .help("Maximum number of files to update the metadata of at the same time");
+
+        argsParser.addArgument("--copy-mode")
+                .choices(CopyMode.COPY.getName(), CopyMode.REWRITE.getName(), CopyMode.CLONE.getName(), CopyMode.LINK.getName())
+                .setDefault(CopyMode.COPY.getName())
+                .dest("copyMode")
+                .help("How files are written to the output directory: 'copy' copies each file and then updates it, " +
+                        "'rewrite' writes each file once with the new track number already in place, " +
+                        "'clone' reflinks the files of an album at once (btrfs, XFS, APFS) and then updates each one, " +
+                        "'link' hard links each file and only copies it when its track number has to change, " +
+                        "so it only saves writing the files that already have the right track number, like on a re-run. " +
+                        "'clone' and 'link' fall back to 'copy' when the file system does not support them");
+
+        argsParser.addArgument("--hash")
+                .action(Arguments.storeTrue())
+                .dest("hash")
+                .help("Hash the source files to find changes that kept the same size and last modified time");
+
+        argsParser.addArgument("--verify")
+                .action(Arguments.storeTrue())
+                .dest("verify")
+                .help("Check that the audio of every output file still matches its source once its track number is written, " +
+                        "the run fails when one does not. Each output file is forced to disk and read again, but on a network share " +
+                        "(SMB, NFS) that read may still come from the local cache. Files left unchanged since the last run are " +
+                        "checked again too, so a later run with --verify checks what the share really stored");
+
+        argsParser.addArgument("--write-totals")
+                .action(Arguments.storeTrue())
+                .dest("writeTotals")
+                .help("Also write the track total and set the disc to 1 of 1, since the disks become a single album, " +
+                        "in the same tag commit as the track number");
+
+        argsParser.addArgument("--album")
+                .metavar("NAME")
+                .dest("album")
+                .help("Album name to write to every track, in the same tag commit as the track number");
+
+        argsParser.addArgument("--album-artist")
+                .metavar("NAME")
+                .dest("albumArtist")
+                .help("Album artist to write to every track, in the same tag commit as the track number");
+
+        argsParser.addArgument("--retries")
+                .metavar("N")
+                .type(Integer.class)
+                .choices(Arguments.range(0, Integer.MAX_VALUE))
+                .setDefault(2)
+                .dest("retries")
+                .help("How many times to try a file again after a transient I/O error, before it is quarantined");
+
+        argsParser.addArgument("--retry-backoff")
+                .metavar("MILLIS")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(200)
+                .dest("retryBackoff")
+                .help("How long to wait before trying a file again, doubling with every try");
+
+        argsParser.addArgument("--fail-fast")
+                .action(Arguments.storeTrue())
+                .dest("failFast")
+                .help("Stop the run at the first file that keeps failing, instead of quarantining it and going on with the others");
+
+        argsParser.addArgument("--force")
+                .action(Arguments.storeTrue())
+                .dest("force")
+                .help("Copy and renumber every file, even the ones that are unchanged since the last run");
+
+        argsParser.addArgument("--resume")
+                .action(Arguments.storeTrue())
+                .dest("resume")
+                .help("Pick up a run that died where it stopped, instead of copying and renumbering the files it already finished again");
+
+        argsParser.addArgument("--library")
+                .action(Arguments.storeTrue())
+                .dest("library")
+                .help("Treat the input directory as a library and renumber every album found in it, " +
+                        "each one into the same relative directory of the output directory");
+
+        argsParser.addArgument("--album-concurrency")
+                .metavar("N")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(2)
+                .dest("albumConcurrency")
+                .help("Maximum number of albums to renumber at the same time in library mode");
+
+        argsParser.addArgument("--shard")
+                .metavar("K/N")
+                .type((parser, argument, value) -> {
+                    try {
+                        return Shard.parse(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new ArgumentParserException(e.getMessage(), e, parser, argument);
+                    }
+                })
+                .dest("shard")
+                .help("Only renumber the K-th of N slices of the albums in library mode, so N processes can share a library. " +
+                        "Each shard writes its own report, which --merge-reports combines once every shard is done");
+
+        argsParser.addArgument("--merge-reports")
+                .action(Arguments.storeTrue())
+                .dest("mergeReports")
+                .help("Merge the reports the shards wrote to the output directory into a single report, instead of renumbering");
+
+        argsParser.addArgument("--storage")
+                .choices(Storage.LOCAL.getName(), Storage.NETWORK.getName())
+                .setDefault(Storage.LOCAL.getName())
+                .dest("storage")
+                .help("Where the files live, which picks the default pool size and max concurrency: " +
+                        "'local' (" + Storage.LOCAL.getPoolSize() + " threads, " + Storage.LOCAL.getMaxConcurrency() + " files at a time) or " +
+                        "'network' (" + Storage.NETWORK.getPoolSize() + " threads, " + Storage.NETWORK.getMaxConcurrency() + " files at a time)");
+
+        argsParser.addArgument("--engine")
+                .choices(ExecutionEngine.BOUNDED_ELASTIC.getName(), ExecutionEngine.FIXED.getName(),
+                        ExecutionEngine.PARALLEL.getName(), ExecutionEngine.VIRTUAL.getName())
+                .setDefault(ExecutionEngine.BOUNDED_ELASTIC.getName())
+                .dest("engine")
+                .help("The threads files are copied and updated on: 'bounded-elastic' grows up to the pool size as needed, " +
+                        "'fixed' always uses the pool size, 'parallel' is sized for CPU bound work and " +
+                        "'virtual' uses a virtual thread per file (Java 21 or newer)");
+
+        argsParser.addArgument("--pool-size")
+                .metavar("N")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .dest("poolSize")
+                .help("Number of threads of the engine, defaults to the one of the storage");
+
+        argsParser.addArgument("--max-concurrency")
+                .metavar("N")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .dest("maxConcurrency")
+                .help("Maximum number of files to copy at the same time, defaults to the one of the storage");
+
+        argsParser.addArgument("--plan")
+                .action(Arguments.storeTrue())
+                .dest("plan")
+                .help("Only list what would be done: the new track number of every file, the files that are skipped and why, " +
+                        "the total size and an estimate of how long the run would take. Nothing is copied or tagged");
+
+        argsParser.addArgument("--watch")
+                .action(Arguments.storeTrue())
+                .dest("watch")
+                .help("Keep running after renumbering and renumber an album again whenever disk tracks are added to it");
+
+        argsParser.addArgument("--debounce")
+                .metavar("SECONDS")
+                .type(Integer.class)
+                .choices(Arguments.range(0, Integer.MAX_VALUE))
+                .setDefault(30)
+                .dest("debounce")
+                .help("How long none of the files of an album have to change before it is renumbered in watch mode");
+
+        argsParser.addArgument("--report")
+                .metavar("PATH")
+                .dest("report")
+                .help("Where to write the JSON report with the timings and throughput of the run, " +
+                        "defaults to " + RunReport.FILE_NAME + " in the output directory");
     }
 
     @Override
@@ -65,6 +244,52 @@ public class RenumberTrackMetadataForMultipleDiskAlbumCommand extends CliCommand
             throw new DirectoryDoesNotExistException(inputDir);
         }
 
+        Shard shard = namespace.get("shard");
+        boolean library = namespace.getBoolean("library");
+        String reportPath = namespace.getString("report");
+        File reportFile;
+        if (reportPath != null) {
+            reportFile = new File(reportPath);
+        } else if (shard != null && library) {
+            reportFile = new File(outputDir, shard.getReportFileName());
+        } else {
+            reportFile = new File(outputDir, RunReport.FILE_NAME);
+        }
+
+        if (AlbumArchive.isArchive(inputDir)) {
+            if (library || namespace.getBoolean("watch")) {
+                throw new IllegalArgumentException("An archive holds a single album, it can not be used with --library or --watch: " +
+                        inputDir.getAbsolutePath());
+            }
+            List<String> unsupported = new ArrayList<>();
+            if (namespace.getBoolean("verify")) {
+                unsupported.add("--verify");
+            }
+            if (CopyMode.fromName(namespace.getString("copyMode")) != CopyMode.COPY) {
+                unsupported.add("--copy-mode");
+            }
+            if (namespace.getBoolean("hash")) {
+                unsupported.add("--hash");
+            }
+            if (namespace.getBoolean("resume")) {
+                unsupported.add("--resume");
+            }
+            if (!unsupported.isEmpty()) {
+                throw new IllegalArgumentException("Every track of an archive is written straight from it on every run, it can not be used with " +
+                        String.join(", ", unsupported) + ": " + inputDir.getAbsolutePath());
+            }
+        }
+
+        if (namespace.getBoolean("mergeReports")) {
+            mergeReports(commandContext, outputDir, reportFile);
+            return;
+        }
+
+        if (namespace.getBoolean("plan")) {
+            plan(commandContext, inputDir, outputDir, library, shard);
+            return;
+        }
+
         if (!outputDir.exists()) {
             if (outputDir.mkdirs()) {
                 commandContext.getLog().info("Created output directory...");
@@ -73,90 +298,333 @@ public class RenumberTrackMetadataForMultipleDiskAlbumCommand extends CliCommand
             }
         }
 
-        List<DiskTrack> tracks = copyFilesToOutputDir(commandContext, inputDir, outputDir);
-        updateMetadata(commandContext, tracks);
+        Storage storage = Storage.fromName(namespace.getString("storage"));
+        Integer poolSize = namespace.getInt("poolSize");
+        Integer maxConcurrency = namespace.getInt("maxConcurrency");
+
+        RenumberOptions options = new RenumberOptions();
+        options.setCopyMode(CopyMode.fromName(namespace.getString("copyMode")));
+        options.setTagConcurrency(namespace.getInt("tagConcurrency"));
+        options.setMaxConcurrency(maxConcurrency == null ? storage.getMaxConcurrency() : maxConcurrency);
+        options.setHash(namespace.getBoolean("hash"));
+        options.setForce(namespace.getBoolean("force"));
+        options.setResume(namespace.getBoolean("resume"));
+        options.setVerify(namespace.getBoolean("verify"));
+        options.setWriteTotals(namespace.getBoolean("writeTotals"));
+        options.setRetries(namespace.getInt("retries"));
+        options.setRetryBackoff(Duration.ofMillis(namespace.getInt("retryBackoff")));
+        options.setFailFast(namespace.getBoolean("failFast"));
+        if (namespace.getString("album") != null) {
+            options.setAlbumField(TrackTags.AlbumField.ALBUM, namespace.getString("album"));
+        }
+        if (namespace.getString("albumArtist") != null) {
+            options.setAlbumField(TrackTags.AlbumField.ALBUM_ARTIST, namespace.getString("albumArtist"));
+        }
+
+        ExecutionEngine engine = ExecutionEngine.fromName(namespace.getString("engine"));
+        int threads = poolSize == null ? storage.getPoolSize() : poolSize;
+
+        RunMetrics metrics = new RunMetrics();
+        RunReport report = new RunReport(metrics)
+                .setting("copy-mode", options.getCopyMode().getName())
+                .setting("engine", engine.getName())
+                .setting("pool-size", threads)
+                .setting("max-concurrency", options.getMaxConcurrency())
+                .setting("tag-concurrency", options.getTagConcurrency())
+                .setting("library", library)
+                .setting("verify", options.isVerify())
+                .setting("write-totals", options.isWriteTotals())
+                .setting("retries", options.getRetries())
+                .setting("fail-fast", options.isFailFast());
+        if (shard != null && library) {
+            report.setting("shard", shard.toString());
+        }
+
+        Scheduler scheduler = engine.createScheduler(threads);
+        renumberer = new AlbumRenumberer(scheduler);
+        renumberer.setTagWriter(tagWriter);
+        renumberer.setMetrics(metrics);
+        renumberer.setListener(new PrintProgress(commandContext.getLog()));
+        results = new RunResults();
+        boolean watch = namespace.getBoolean("watch");
+        try {
+            if (library) {
+                renumberLibrary(commandContext, inputDir, outputDir, shard, namespace.getInt("albumConcurrency"), options);
+            } else {
+                renumberer.renumber(new Album(inputDir, outputDir), options).doOnNext(results::add).blockLast();
+            }
+
+            if (watch) {
+                writeReport(commandContext, reportFile, report);
+                startOver(commandContext, outputDir);
+                watch(commandContext, inputDir, outputDir, library, shard, Duration.ofSeconds(namespace.getInt("debounce")), options,
+                        (album) -> {
+                            writeReport(commandContext, reportFile, report);
+                            startOver(commandContext, album.getOutputDir());
+                        });
+            }
+        } finally {
+            scheduler.dispose();
+            metrics.finish();
+            writeReport(commandContext, reportFile, report);
+        }
+        if (watch) {
+            // every album was summarized as soon as it was done
+            return;
+        }
+
+        summarize(commandContext, outputDir);
+        Map<File, String> failures = results.verificationFailures;
+        if (!failures.isEmpty()) {
+            failures.forEach((file, reason) -> commandContext.getLog().warn("Failed verification of {0}: {1}", file.getAbsolutePath(), reason));
+            throw new VerificationFailedException(failures);
+        }
+        Quarantine quarantine = results.quarantine;
+        if (!quarantine.isEmpty()) {
+            throw new FilesQuarantinedException(quarantine.getFiles());
+        }
     }
 
-    private void updateMetadata(CommandContext commandContext, List<DiskTrack> tracks) {
-        Collections.sort(tracks);
+    /**
+     * Summarizes what was renumbered while watching and forgets about it, along with the timings of its files, so a
+     * watch that runs for months does not hold on to every file it wrote. The report has to be written before.
+     */
+    private void startOver(CommandContext commandContext, File outputDir) {
+        summarize(commandContext, outputDir);
+        results.verificationFailures.forEach((file, reason) ->
+                commandContext.getLog().warn("Failed verification of {0}: {1}", file.getAbsolutePath(), reason));
+        renumberer.getMetrics().clearFileTimings();
+        results = new RunResults();
+    }
 
-        CountUpToTotalPrinter progressPrinter = new CountUpToTotalPrinter(tracks.size());
-        progressPrinter.setMessageFormat("Metadata Updated: {count} of {total}");
-        commandContext.getLog().warn("Updating track metadata...");
+    /**
+     * Logs how the run went and lists the quarantined files in the output directory, the list of a previous run is
+     * removed once every file made it.
+     */
+    private void summarize(CommandContext commandContext, File outputDir) {
+        CliLog log = commandContext.getLog();
+        Quarantine quarantine = results.quarantine;
+        log.warn("Wrote {0} and left {1} file(s) unchanged, {2} retried, {3} quarantined, {4} failed verification",
+                results.countOf(TrackResult.Status.WRITTEN), results.countOf(TrackResult.Status.UNCHANGED),
+                renumberer.getMetrics().getRetries(), results.countOf(TrackResult.Status.QUARANTINED),
+                results.countOf(TrackResult.Status.VERIFICATION_FAILED));
 
-        for (int i = 0; i < tracks.size(); i++) {
-            File file = tracks.get(i).getFile();
-            String trackNumber = StringUtils.leftPad(String.valueOf(i + 1), 3, "0");
-            updateTrackNumberInMetaData.update(file, trackNumber);
-            progressPrinter.println("Track " + trackNumber + " for " + file.getName());
-            progressPrinter.step();
+        File quarantineFile = new File(outputDir, Quarantine.FILE_NAME);
+        if (quarantine.isEmpty()) {
+            if (quarantineFile.exists() && !quarantineFile.delete()) {
+                log.warn("Failed deleting the quarantine of the last run: {0}", quarantineFile.getAbsolutePath());
+            }
+            return;
+        }
+
+        quarantine.getFiles().forEach((file, reason) -> log.warn("Quarantined {0}: {1}", file.getAbsolutePath(), reason));
+        try {
+            quarantine.writeTo(quarantineFile);
+            log.warn("Quarantined files are listed in: {0}", quarantineFile.getAbsolutePath());
+        } catch (IllegalStateException e) {
+            log.warn("Failed writing quarantine: {0}", quarantineFile.getAbsolutePath());
         }
     }
 
-    private List<DiskTrack> copyFilesToOutputDir(CommandContext commandContext, File inputDir, File outputDir) {
-        File[] filesOnDisk = inputDir.listFiles();
-        if (filesOnDisk == null) {
-            throw new IllegalStateException("For some reason we are unable to get the list of files on disk.\n" +
-                    inputDir.getAbsolutePath() +
-                    "\n ¯\\_(ツ)_/¯");
+    private void plan(CommandContext commandContext, File inputDir, File outputDir, boolean library, Shard shard) {
+        CliLog log = commandContext.getLog();
+        List<Album> albums = library ? findAlbumsInLibrary(inputDir, outputDir, shard) : Collections.singletonList(new Album(inputDir, outputDir));
+        PlanRenumbering.Plan plan = new PlanRenumbering(listDiskTracks).plan(albums, (album) -> {
+            log.warn("{0} -> {1}", album.getAlbum().getInputDir().getAbsolutePath(), album.getAlbum().getOutputDir().getAbsolutePath());
+            for (RenumberedTrack track : album.getTracks()) {
+                log.warn("  Disk {0} track {1} -> track {2}: {3}", track.getDiskTrack().getDisk(), track.getDiskTrack().getTrack(),
+                        track.getTrackNumber(), track.getInputFile().getName());
+            }
+            album.getSkipped().forEach((file, reason) -> log.warn("  Skipping {0}, since {1}", file.getName(), reason));
+        });
+
+        log.warn("{0} album(s), {1} file(s), {2} in total", plan.getAlbumCount(), plan.getTrackCount(),
+                FileUtils.byteCountToDisplaySize(plan.getTotalBytes()));
+        Duration estimate = plan.getEstimatedRuntime();
+        if (estimate == null) {
+            log.warn("Estimated runtime: unknown, no files could be read");
+        } else {
+            log.warn("Estimated runtime: {0} at {1} MB/s", DurationFormatUtils.formatDuration(estimate.toMillis(), "HH:mm:ss"),
+                    String.format("%.1f", plan.getBytesPerSecond() / (1024 * 1024)));
         }
+    }
 
-        List<File> audioFiles = Arrays.stream(filesOnDisk)
-                .filter(this::isNotDirectory)
-                .filter(this::isAudioFile)
-                .filter(this::isAudioFileThatIsPartOfTheDiskSet)
-                .collect(toList());
+    /**
+     * Renumbers every album that gets new disk tracks, one album at a time, until the process is stopped. An album
+     * that fails is logged and does not stop the watching.
+     */
+    private void watch(CommandContext commandContext, File inputDir, File outputDir, boolean library, Shard shard, Duration debounce,
+                       RenumberOptions options, Consumer<Album> afterEachAlbum) {
+        commandContext.getLog().warn("Watching {0} for new files...", inputDir.getAbsolutePath());
 
-        if (audioFiles.isEmpty()) {
-            commandContext.getLog().warn("No audio files found to copy.");
-            return Collections.emptyList();
+        try (WatchForAlbums watchForAlbums = new WatchForAlbums((file) -> isAudioFileThatIsPartOfTheDiskSet(file.toString()), debounce)) {
+            watchForAlbums.watch(inputDir, outputDir, library, (album) -> {
+                if (library && shard != null && !shard.contains(inputDir, album)) {
+                    return;
+                }
+                commandContext.getLog().warn("Renumbering {0}...", album.getInputDir().getAbsolutePath());
+                try {
+                    renumberer.renumber(album, options).doOnNext(results::add).blockLast();
+                } catch (RuntimeException e) {
+                    commandContext.getLog().warn("Failed renumbering {0}: {1}", album.getInputDir().getAbsolutePath(), e.getMessage());
+                }
+                afterEachAlbum.accept(album);
+            });
         }
+    }
 
-        CountUpToTotalPrinter progressPrinter = new CountUpToTotalPrinter(audioFiles.size());
-        progressPrinter.setMessageFormat("Copied: {count} of {total}");
+    /**
+     * Combines the reports of every shard in the output directory. The manifest of an album is only ever written by
+     * the shard the album belongs to, so the manifests need no merging, but an album that still has a journal belongs
+     * to a shard that died and has to be run again with --resume.
+     */
+    private void mergeReports(CommandContext commandContext, File outputDir, File reportFile) {
+        File[] shardReports = outputDir.listFiles((dir, name) -> name.startsWith(RunReport.SHARD_FILE_NAME_PREFIX) && name.endsWith(".json"));
+        if (shardReports == null || shardReports.length == 0) {
+            commandContext.getLog().warn("No shard reports found in: {0}", outputDir.getAbsolutePath());
+            return;
+        }
 
-        commandContext.getLog().warn("Copying {0} file(s)...", audioFiles.size());
+        Arrays.sort(shardReports);
+        List<JsonObject> reports = new ArrayList<>(shardReports.length);
+        for (File shardReport : shardReports) {
+            reports.add(RunReport.read(shardReport));
+        }
+        RunReport.writeTo(reportFile, RunReport.merge(reports));
+        commandContext.getLog().warn("Merged {0} shard report(s) into: {1}", shardReports.length, reportFile.getAbsolutePath());
 
-        return Flux.fromIterable(audioFiles)
-                .flatMap((inputFile) -> copyFileTo(inputFile, outputDir))
-                .doOnNext((outputFile) -> {
-                    progressPrinter.println("Copied: " + outputFile.getName());
-                    progressPrinter.step();
-                })
-                .map(DiskTrack::new)
-                .subscribeOn(scheduler)
-                .collectList()
-                .block();
+        try (Stream<Path> files = Files.walk(outputDir.toPath())) {
+            files.filter((file) -> file.getFileName().toString().equals(TrackManifest.JOURNAL_FILE_NAME))
+                    .forEach((journal) -> commandContext.getLog().warn("Unfinished album, run its shard again with --resume: {0}",
+                            journal.getParent().toAbsolutePath()));
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed looking for unfinished albums in: " + outputDir.getAbsolutePath(), e);
+        }
     }
 
-    private boolean isAudioFileThatIsPartOfTheDiskSet(File file) {
-        boolean matchesPattern = file.getName().matches("[0-9]+?-[0-9]+? .+?\\." + AUDIO_FILE_EXTENSION);
-        if (!matchesPattern) {
-            new CliLog().warn("Ignoring file ({0}), since the filename does NOT match the correct pattern", file.getName());
+    private void writeReport(CommandContext commandContext, File reportFile, RunReport report) {
+        try {
+            report.writeTo(reportFile);
+            commandContext.getLog().info("Report written to: {0}", reportFile.getAbsolutePath());
+        } catch (IllegalStateException e) {
+            commandContext.getLog().warn("Failed writing report: {0}", reportFile.getAbsolutePath());
         }
-        return matchesPattern;
     }
 
-    private boolean isAudioFile(File file) {
-        return file.getName().endsWith("." + AUDIO_FILE_EXTENSION);
+    private void renumberLibrary(CommandContext commandContext, File libraryDir, File outputDir, Shard shard, int albumConcurrency,
+                                 RenumberOptions options) {
+        List<Album> albums = findAlbumsInLibrary(libraryDir, outputDir, shard);
+
+        if (albums.isEmpty()) {
+            commandContext.getLog().warn("No albums found in library.");
+            return;
+        }
+
+        commandContext.getLog().warn("Renumbering {0} album(s)...", albums.size());
+
+        Flux.fromIterable(albums)
+                .flatMap((album) -> renumberer.renumber(album, options), albumConcurrency)
+                .doOnNext(results::add)
+                .blockLast();
+    }
+
+    /**
+     * @param shard null for every album of the library
+     */
+    private List<Album> findAlbumsInLibrary(File libraryDir, File outputDir, Shard shard) {
+        List<Album> albums = new FindAlbumsInLibrary((file) -> isAudioFileThatIsPartOfTheDiskSet(file.getFileName().toString()))
+                .find(libraryDir, outputDir);
+        return shard == null ? albums : shard.select(libraryDir, albums);
     }
 
-    private boolean isNotDirectory(File file) {
-        return !file.isDirectory();
+    private boolean isAudioFileThatIsPartOfTheDiskSet(String fileName) {
+        return diskTrackNameParser.parse(fileName).isDiskTrack();
     }
 
-    private Mono<File> copyFileTo(File inputFile, File outputDir) {
-        return Mono.fromCallable(() -> {
-            File outputFile = new File(outputDir, inputFile.getName());
+    /**
+     * Logs what the renumberer has to say and prints how far copying and tagging each album got. The printers of an
+     * album are only used by one thread at a time.
+     */
+    private static class PrintProgress implements RenumberListener {
+        private final CliLog log;
+        private final Map<Album, AlbumProgress> albums = new ConcurrentHashMap<>();
+
+        private PrintProgress(CliLog log) {
+            this.log = log;
+        }
 
-            try {
-                Files.copy(inputFile.toPath(), outputFile.toPath(), REPLACE_EXISTING, COPY_ATTRIBUTES);
-                return outputFile;
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to write file: " + outputFile.getAbsolutePath(), e);
+        @Override
+        public void info(String pattern, Object... arguments) {
+            log.info(pattern, arguments);
+        }
+
+        @Override
+        public void warn(String pattern, Object... arguments) {
+            log.warn(pattern, arguments);
+        }
+
+        @Override
+        public void numbered(Album album, int tracksToCopy, int tracksToRenumber) {
+            albums.put(album, new AlbumProgress(tracksToCopy, tracksToRenumber));
+        }
+
+        @Override
+        public void copied(Album album, RenumberedTrack track) {
+            AlbumProgress progress = albums.get(album);
+            synchronized (progress) {
+                progress.copyProgressPrinter.println("Copied: " + track.getOutputFile().getName());
+                progress.copyProgressPrinter.step();
             }
-        }).subscribeOn(scheduler);
+        }
 
+        @Override
+        public void renumbered(Album album, RenumberedTrack track) {
+            AlbumProgress progress = albums.get(album);
+            synchronized (progress) {
+                progress.metadataProgressPrinter.println("Track " + track.getTrackNumber() + " for " + track.getOutputFile().getName());
+                progress.metadataProgressPrinter.step();
+            }
+        }
     }
-}
 
+    private static class AlbumProgress {
+        private final CountUpToTotalPrinter copyProgressPrinter;
+        private final CountUpToTotalPrinter metadataProgressPrinter;
+
+        private AlbumProgress(int tracksToCopy, int tracksToRenumber) {
+            copyProgressPrinter = new CountUpToTotalPrinter(tracksToCopy);
+            copyProgressPrinter.setMessageFormat("Copied: {count} of {total}");
+
+            metadataProgressPrinter = new CountUpToTotalPrinter(tracksToCopy + tracksToRenumber);
+            metadataProgressPrinter.setMessageFormat("Metadata Updated: {count} of {total}");
+        }
+    }
+
+    /**
+     * The results of every track renumbered by a run, what the summary and the exit of the run are made of.
+     */
+    private static class RunResults {
+        private final Map<TrackResult.Status, AtomicInteger> counts = new EnumMap<>(TrackResult.Status.class);
+        private final Quarantine quarantine = new Quarantine();
+        private final Map<File, String> verificationFailures = new ConcurrentSkipListMap<>();
+
+        private RunResults() {
+            for (TrackResult.Status status : TrackResult.Status.values()) {
+                counts.put(status, new AtomicInteger());
+            }
+        }
+
+        private void add(TrackResult result) {
+            counts.get(result.getStatus()).incrementAndGet();
+            if (result.getStatus() == TrackResult.Status.QUARANTINED) {
+                quarantine.add(result.getFile(), result.getCause());
+            } else if (result.getStatus() == TrackResult.Status.VERIFICATION_FAILED) {
+                verificationFailures.put(result.getFile(), result.getReason());
+            }
+        }
+
+        private int countOf(TrackResult.Status status) {
+            return counts.get(status).get();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package george.multialbum;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class RenumberedTrack {
+    private final DiskTrack diskTrack;
+    private final File outputFile;
+    private final String trackNumber;
+    private final String trackTotal;
+
+    public RenumberedTrack(DiskTrack diskTrack, File outputFile, String trackNumber) {
+        this(diskTrack, outputFile, trackNumber, null);
+    }
+
+    public RenumberedTrack(DiskTrack diskTrack, File outputFile, String trackNumber, String trackTotal) {
+        this.diskTrack = diskTrack;
+        this.outputFile = outputFile;
+        this.trackNumber = trackNumber;
+        this.trackTotal = trackTotal;
+    }
+
+    /**
+     * Sorts the tracks by disk and track and assigns each one its position in the album as the new track number.
+     */
+    public static List<RenumberedTrack> number(List<DiskTrack> tracks, File outputDir) {
+        List<DiskTrack> sortedTracks = new ArrayList<>(tracks);
+        Collections.sort(sortedTracks);
+
+        List<RenumberedTrack> renumberedTracks = new ArrayList<>(sortedTracks.size());
+        String trackTotal = StringUtils.leftPad(String.valueOf(sortedTracks.size()), 3, "0");
+        for (int i = 0; i < sortedTracks.size(); i++) {
+            DiskTrack track = sortedTracks.get(i);
+            String trackNumber = StringUtils.leftPad(String.valueOf(i + 1), 3, "0");
+            renumberedTracks.add(new RenumberedTrack(track, new File(outputDir, track.getFile().getName()), trackNumber, trackTotal));
+        }
+        return renumberedTracks;
+    }
+
+    public DiskTrack getDiskTrack() {
+        return diskTrack;
+    }
+
+    public File getInputFile() {
+        return diskTrack.getFile();
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    public String getTrackNumber() {
+        return trackNumber;
+    }
+
+    /**
+     * @return the number of tracks in the album, or null when it is not known
+     */
+    public String getTrackTotal() {
+        return trackTotal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RenumberedTrack that = (RenumberedTrack) o;
+        return diskTrack.equals(that.diskTrack) &&
+                outputFile.equals(that.outputFile) &&
+                trackNumber.equals(that.trackNumber) &&
+                Objects.equals(trackTotal, that.trackTotal);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(diskTrack, outputFile, trackNumber, trackTotal);
+    }
+
+    @Override
+    public String toString() {
+        return "RenumberedTrack{" +
+                "diskTrack=" + diskTrack +
+                ", outputFile=" + outputFile +
+                ", trackNumber='" + trackNumber + '\'' +
+                ", trackTotal='" + trackTotal + '\'' +
+                '}';
+    }
+}
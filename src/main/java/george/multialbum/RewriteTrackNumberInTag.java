@@ -0,0 +1,59 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldDataInvalidException;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Lets jaudiotagger read the whole tag and commit it again. Works for every format jaudiotagger supports, but may
+ * rewrite the whole file, so the format specific writers only fall back to it when they can not change the file in
+ * place.
+ */
+public class RewriteTrackNumberInTag implements TagWriter {
+    private RunMetrics metrics = new RunMetrics();
+
+    /**
+     * Sets every field of the tags on the jaudiotagger tag, it is up to the caller to commit it.
+     */
+    public static void setFields(Tag tag, TrackTags tags) throws FieldDataInvalidException {
+        tag.setField(FieldKey.TRACK, tags.getTrackNumber());
+        if (tags.getTrackTotal() != null) {
+            tag.setField(FieldKey.TRACK_TOTAL, tags.getTrackTotal());
+        }
+        if (tags.getDiscNumber() != null) {
+            tag.setField(FieldKey.DISC_NO, tags.getDiscNumber());
+        }
+        if (tags.getDiscTotal() != null) {
+            tag.setField(FieldKey.DISC_TOTAL, tags.getDiscTotal());
+        }
+        for (Map.Entry<TrackTags.AlbumField, String> field : tags.getAlbumFields().entrySet()) {
+            tag.setField(field.getKey().getFieldKey(), field.getValue());
+        }
+    }
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        try {
+            long start = System.nanoTime();
+            AudioFile f = AudioFileIO.read(audioFile);
+            metrics.record(RunMetrics.Stage.TAG_READ, audioFile, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            setFields(f.getTagOrCreateAndSetDefault(), tags);
+            f.commit();
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, audioFile, System.nanoTime() - start);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed updating track number (" + tags.getTrackNumber() + ") for: " + audioFile.getName(), e);
+        }
+    }
+}
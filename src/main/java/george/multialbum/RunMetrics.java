@@ -0,0 +1,247 @@
+package george.multialbum;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects how long every stage took for every file, how much was copied, how many tasks were waiting for a thread
+ * and how much of the time spent in tasks was spent on the CPU. Safe to use from any number of threads.
+ */
+public class RunMetrics {
+    public enum Stage {
+        LIST("list"),
+        COPY("copy"),
+        /**
+         * Reading and committing the tag of a file, including any time spent on making sure a hard link is not changed.
+         */
+        TAG("tag"),
+        TAG_READ("tag-read"),
+        TAG_COMMIT("tag-commit"),
+        /**
+         * Hashing the audio of a source and its output to check they match.
+         */
+        VERIFY("verify"),
+        /**
+         * How long a task waited for a thread of the scheduler before it started.
+         */
+        QUEUE_WAIT("queue-wait");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final RuntimeMXBean RUNTIME = ManagementFactory.getRuntimeMXBean();
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<String, AtomicLongArray> fileTimings = new ConcurrentHashMap<>();
+    private final LatencyHistogram queueDepth = new LatencyHistogram();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong filesCopied = new AtomicLong();
+    private final AtomicLong filesNumbered = new AtomicLong();
+    private final AtomicLong filesVerified = new AtomicLong();
+    private final AtomicLong verificationFailures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong filesQuarantined = new AtomicLong();
+    private final AtomicLong firstCopyUptimeMillis = new AtomicLong(-1);
+    private final AtomicLong taskNanos = new AtomicLong();
+    private final AtomicLong taskCpuNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    public RunMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @param file the file the time was spent on, or null when it was not spent on a single file. Time spent on a part
+     *             file counts for the file it is written for.
+     */
+    public void record(Stage stage, File file, long nanos) {
+        stages.get(stage).record(nanos);
+        if (file != null) {
+            fileTimings.computeIfAbsent(CopyAudioFile.destinationOf(file).getPath(), (path) -> new AtomicLongArray(Stage.values().length))
+                    .addAndGet(stage.ordinal(), nanos);
+        }
+    }
+
+    /**
+     * Runs the work and records how long it took.
+     */
+    public <T> T time(Stage stage, File file, Callable<T> work) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            record(stage, file, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Call when a task is handed to the scheduler.
+     *
+     * @return what to pass to {@link #started(long)} once the task runs
+     */
+    public long queued() {
+        queued.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Call when a task that was {@link #queued()} starts running.
+     */
+    public void started(long queuedAt) {
+        queueDepth.record(queued.getAndDecrement());
+        record(Stage.QUEUE_WAIT, null, System.nanoTime() - queuedAt);
+    }
+
+    /**
+     * Runs a task on the current thread and records both the wall clock and CPU time it took, the ratio between the
+     * two tells if the run was waiting on I/O or on the CPU.
+     */
+    public <T> T task(Callable<T> work) throws Exception {
+        long cpuStart = currentThreadCpuTime();
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            long cpuEnd = currentThreadCpuTime();
+            if (cpuStart >= 0 && cpuEnd >= 0) {
+                taskNanos.addAndGet(System.nanoTime() - start);
+                taskCpuNanos.addAndGet(cpuEnd - cpuStart);
+            }
+        }
+    }
+
+    public void copied(long bytes) {
+        if (filesCopied.incrementAndGet() == 1) {
+            firstCopyUptimeMillis.compareAndSet(-1, RUNTIME.getUptime());
+        }
+        bytesCopied.addAndGet(bytes);
+    }
+
+    public void numbered() {
+        filesNumbered.incrementAndGet();
+    }
+
+    public void verified() {
+        filesVerified.incrementAndGet();
+    }
+
+    public void verificationFailed() {
+        verificationFailures.incrementAndGet();
+    }
+
+    public void retried() {
+        retries.incrementAndGet();
+    }
+
+    public void quarantined() {
+        filesQuarantined.incrementAndGet();
+    }
+
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public LatencyHistogram getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread, sampled every time one of them started
+     */
+    public LatencyHistogram getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return the nanoseconds spent in each stage per file path, indexed by {@link Stage#ordinal()}
+     */
+    public Map<String, AtomicLongArray> getFileTimings() {
+        return fileTimings;
+    }
+
+    /**
+     * Forgets the timings of the files done so far, so watching for albums does not keep one for every file it ever
+     * wrote. The counters and the stages keep counting.
+     */
+    public void clearFileTimings() {
+        fileTimings.clear();
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    /**
+     * @return how long after the JVM started the first file was copied, which includes starting the JVM and the
+     * command, or -1 when nothing was copied
+     */
+    public long getFirstCopyUptimeMillis() {
+        return firstCopyUptimeMillis.get();
+    }
+
+    public long getFilesCopied() {
+        return filesCopied.get();
+    }
+
+    public long getFilesNumbered() {
+        return filesNumbered.get();
+    }
+
+    public long getFilesVerified() {
+        return filesVerified.get();
+    }
+
+    public long getVerificationFailures() {
+        return verificationFailures.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getFilesQuarantined() {
+        return filesQuarantined.get();
+    }
+
+    public long getTaskNanos() {
+        return taskNanos.get();
+    }
+
+    public long getTaskCpuNanos() {
+        return taskCpuNanos.get();
+    }
+
+    public long getElapsedNanos() {
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    private long currentThreadCpuTime() {
+        try {
+            return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+}
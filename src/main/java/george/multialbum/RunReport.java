@@ -0,0 +1,234 @@
+package george.multialbum;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.eclipsesource.json.WriterConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Writes the {@link RunMetrics} of a run as JSON.
+ * <p>
+ * Durations are in milliseconds. Every histogram also has its raw buckets, so the reports of several runs can be
+ * merged without losing the percentiles. The "cpu-share" is the CPU time of all tasks divided by their wall clock
+ * time: close to 1 means the run was CPU bound, close to 0 means it was waiting on I/O.
+ * <p>
+ * The reports of the shards of a run are merged into one with {@link #merge(List)}.
+ */
+public class RunReport {
+    public static final String FILE_NAME = ".george-report.json";
+    public static final String SHARD_FILE_NAME_PREFIX = ".george-report-shard-";
+    private static final String[] COUNTERS = {"files-copied", "files-numbered", "bytes-copied", "files-verified",
+            "verification-failures", "retries", "files-quarantined"};
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final RunMetrics metrics;
+    private final JsonObject settings = new JsonObject();
+
+    public RunReport(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RunReport setting(String name, String value) {
+        settings.add(name, value);
+        return this;
+    }
+
+    public RunReport setting(String name, int value) {
+        settings.add(name, value);
+        return this;
+    }
+
+    public RunReport setting(String name, boolean value) {
+        settings.add(name, value);
+        return this;
+    }
+
+    public JsonObject toJson() {
+        double seconds = metrics.getElapsedNanos() / 1_000_000_000.0;
+        long files = metrics.getFilesCopied() + metrics.getFilesNumbered();
+
+        JsonObject report = Json.object()
+                .add("settings", settings)
+                .add("elapsed-ms", metrics.getElapsedNanos() / NANOS_PER_MILLI)
+                .add("files-copied", metrics.getFilesCopied())
+                .add("files-numbered", metrics.getFilesNumbered())
+                .add("bytes-copied", metrics.getBytesCopied())
+                .add("first-copy-uptime-ms", metrics.getFirstCopyUptimeMillis())
+                .add("mb-per-second", seconds == 0 ? 0 : metrics.getBytesCopied() / BYTES_PER_MB / seconds)
+                .add("files-per-second", seconds == 0 ? 0 : files / seconds)
+                .add("files-verified", metrics.getFilesVerified())
+                .add("verification-failures", metrics.getVerificationFailures())
+                .add("retries", metrics.getRetries())
+                .add("files-quarantined", metrics.getFilesQuarantined())
+                .add("task-ms", metrics.getTaskNanos() / NANOS_PER_MILLI)
+                .add("task-cpu-ms", metrics.getTaskCpuNanos() / NANOS_PER_MILLI)
+                .add("cpu-share", metrics.getTaskNanos() == 0 ? 0 : (double) metrics.getTaskCpuNanos() / metrics.getTaskNanos())
+                .add("queue-depth", histogram(metrics.getQueueDepth(), 1));
+
+        JsonObject stages = Json.object();
+        for (RunMetrics.Stage stage : RunMetrics.Stage.values()) {
+            stages.add(stage.getName(), histogram(metrics.getStage(stage), NANOS_PER_MILLI));
+        }
+        report.add("stages", stages);
+
+        JsonArray fileTimings = Json.array();
+        for (Map.Entry<String, AtomicLongArray> entry : new TreeMap<>(metrics.getFileTimings()).entrySet()) {
+            JsonObject file = Json.object().add("file", entry.getKey());
+            for (RunMetrics.Stage stage : RunMetrics.Stage.values()) {
+                long nanos = entry.getValue().get(stage.ordinal());
+                if (nanos > 0) {
+                    file.add(stage.getName() + "-ms", nanos / NANOS_PER_MILLI);
+                }
+            }
+            fileTimings.add(file);
+        }
+        report.add("files", fileTimings);
+        return report;
+    }
+
+    public void writeTo(File file) {
+        writeTo(file, toJson());
+    }
+
+    public static void writeTo(File file, JsonObject report) {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            report.writeTo(writer, WriterConfig.PRETTY_PRINT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed writing report: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public static JsonObject read(File file) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return Json.parse(reader).asObject();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Failed reading report: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Combines the reports of shards that ran at the same time into the report of a single run: the counts add up,
+     * the histograms are merged bucket by bucket and the run took as long as the slowest shard.
+     */
+    public static JsonObject merge(List<JsonObject> reports) {
+        JsonObject settings = reports.isEmpty() ? new JsonObject() : new JsonObject(reports.get(0).get("settings").asObject());
+        settings.remove("shard");
+        settings.add("shards", reports.size());
+
+        double elapsedMillis = 0;
+        long[] counters = new long[COUNTERS.length];
+        double taskMillis = 0;
+        double taskCpuMillis = 0;
+        LatencyHistogram queueDepth = new LatencyHistogram();
+        Map<RunMetrics.Stage, LatencyHistogram> stages = new EnumMap<>(RunMetrics.Stage.class);
+        List<JsonObject> fileTimings = new ArrayList<>();
+        for (JsonObject report : reports) {
+            elapsedMillis = Math.max(elapsedMillis, report.getDouble("elapsed-ms", 0));
+            for (int i = 0; i < COUNTERS.length; i++) {
+                counters[i] += report.getLong(COUNTERS[i], 0);
+            }
+            taskMillis += report.getDouble("task-ms", 0);
+            taskCpuMillis += report.getDouble("task-cpu-ms", 0);
+            mergeHistogram(queueDepth, report.get("queue-depth"), 1);
+            JsonValue reportStages = report.get("stages");
+            for (RunMetrics.Stage stage : RunMetrics.Stage.values()) {
+                mergeHistogram(stages.computeIfAbsent(stage, (s) -> new LatencyHistogram()),
+                        reportStages == null ? null : reportStages.asObject().get(stage.getName()), NANOS_PER_MILLI);
+            }
+            JsonValue reportFiles = report.get("files");
+            if (reportFiles != null) {
+                reportFiles.asArray().forEach((file) -> fileTimings.add(file.asObject()));
+            }
+        }
+
+        double seconds = elapsedMillis / 1000.0;
+        JsonObject merged = Json.object()
+                .add("settings", settings)
+                .add("elapsed-ms", elapsedMillis);
+        for (int i = 0; i < COUNTERS.length; i++) {
+            merged.add(COUNTERS[i], counters[i]);
+        }
+        long bytesCopied = merged.getLong("bytes-copied", 0);
+        long files = merged.getLong("files-copied", 0) + merged.getLong("files-numbered", 0);
+        merged.add("mb-per-second", seconds == 0 ? 0 : bytesCopied / BYTES_PER_MB / seconds)
+                .add("files-per-second", seconds == 0 ? 0 : files / seconds);
+        merged.add("task-ms", taskMillis)
+                .add("task-cpu-ms", taskCpuMillis)
+                .add("cpu-share", taskMillis == 0 ? 0 : taskCpuMillis / taskMillis)
+                .add("queue-depth", histogram(queueDepth, 1));
+
+        JsonObject mergedStages = Json.object();
+        for (RunMetrics.Stage stage : RunMetrics.Stage.values()) {
+            mergedStages.add(stage.getName(), histogram(stages.get(stage), NANOS_PER_MILLI));
+        }
+        merged.add("stages", mergedStages);
+
+        fileTimings.sort(Comparator.comparing((file) -> file.getString("file", "")));
+        JsonArray mergedFiles = Json.array();
+        fileTimings.forEach(mergedFiles::add);
+        merged.add("files", mergedFiles);
+        return merged;
+    }
+
+    /**
+     * @param unit what the summary of the histogram was divided by, see {@link #histogram(LatencyHistogram, double)}
+     */
+    private static void mergeHistogram(LatencyHistogram histogram, JsonValue json, double unit) {
+        if (json == null) {
+            return;
+        }
+        JsonObject summary = json.asObject();
+        long[] bucketCounts = new long[histogram.getBucketCount()];
+        JsonValue buckets = summary.get("buckets");
+        if (buckets != null) {
+            for (JsonValue bucket : buckets.asArray()) {
+                int index = bucket.asArray().get(0).asInt();
+                if (index >= 0 && index < bucketCounts.length) {
+                    bucketCounts[index] += bucket.asArray().get(1).asLong();
+                }
+            }
+        }
+        String suffix = unit == NANOS_PER_MILLI ? "-ms" : "";
+        histogram.merge(bucketCounts, summary.getLong("total", 0), Math.round(summary.getDouble("max" + suffix, 0) * unit));
+    }
+
+    /**
+     * @param unit what to divide the recorded values by for the summary, the buckets are always in recorded values
+     */
+    private static JsonObject histogram(LatencyHistogram histogram, double unit) {
+        String suffix = unit == NANOS_PER_MILLI ? "-ms" : "";
+        JsonArray buckets = Json.array();
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            long count = histogram.getCountAt(i);
+            if (count > 0) {
+                buckets.add(Json.array(i, count));
+            }
+        }
+
+        return Json.object()
+                .add("count", histogram.getCount())
+                .add("mean" + suffix, histogram.getMean() / unit)
+                .add("p50" + suffix, histogram.getValueAtPercentile(50) / unit)
+                .add("p90" + suffix, histogram.getValueAtPercentile(90) / unit)
+                .add("p99" + suffix, histogram.getValueAtPercentile(99) / unit)
+                .add("max" + suffix, histogram.getMax() / unit)
+                .add("total", histogram.getTotal())
+                .add("buckets", buckets);
+    }
+}
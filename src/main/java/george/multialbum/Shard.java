@@ -0,0 +1,97 @@
+package george.multialbum;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * One of N slices of the albums of a library, so several processes, or machines sharing the storage, can each
+ * renumber their own slice.
+ * <p>
+ * An album belongs to a shard by a hash of its path relative to the library, so every process picks the same albums
+ * no matter in which order they are found or which albums were added since. Whole albums are sharded, the tracks of
+ * an album are always numbered by a single process.
+ */
+public class Shard {
+    private final int index;
+    private final int count;
+
+    public Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Shard must be between 1 and " + count + ": " + index);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @param value like "2/4", for the second of four shards
+     */
+    public static Shard parse(String value) {
+        String[] parts = value.split("/");
+        try {
+            if (parts.length == 2) {
+                return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            }
+        } catch (NumberFormatException e) {
+            // not a shard
+        }
+        throw new IllegalArgumentException("Shard must look like K/N, with K between 1 and N: " + value);
+    }
+
+    public List<Album> select(File libraryDir, List<Album> albums) {
+        return albums.stream()
+                .filter((album) -> contains(libraryDir, album))
+                .collect(toList());
+    }
+
+    public boolean contains(File libraryDir, Album album) {
+        Path library = libraryDir.toPath().toAbsolutePath().normalize();
+        Path albumDir = album.getInputDir().toPath().toAbsolutePath().normalize();
+        // the same on every platform, so machines with different path separators agree on the shards
+        String relativePath = library.relativize(albumDir).toString().replace(File.separatorChar, '/');
+
+        CRC32 hash = new CRC32();
+        hash.update(relativePath.getBytes(StandardCharsets.UTF_8));
+        return hash.getValue() % count == index - 1;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the name of the report the shard writes, so the shards of a run never overwrite each other's report
+     */
+    public String getReportFileName() {
+        return RunReport.SHARD_FILE_NAME_PREFIX + index + "-of-" + count + ".json";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Shard shard = (Shard) o;
+        return index == shard.index &&
+                count == shard.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, count);
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,42 @@
+package george.multialbum;
+
+import java.util.Locale;
+
+/**
+ * Where the albums live, which decides the defaults for how much I/O is done at the same time.
+ */
+public enum Storage {
+    /**
+     * Local disks and SSDs have little latency, a couple of blocking copies per core keeps them busy.
+     */
+    LOCAL(Runtime.getRuntime().availableProcessors() * 2, Runtime.getRuntime().availableProcessors() * 2),
+    /**
+     * Network mounts spend most of each request waiting, so many more copies are kept in flight to hide the
+     * latency, independent of the number of cores.
+     */
+    NETWORK(Math.max(16, Runtime.getRuntime().availableProcessors() * 4), Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+
+    private final int poolSize;
+    private final int maxConcurrency;
+
+    Storage(int poolSize, int maxConcurrency) {
+        this.poolSize = poolSize;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public static Storage fromName(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,48 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Writes the tags of a track into the tag of one audio format, every field in a single commit. Implementations change
+ * the file in place whenever the format leaves room for it, and only rewrite the whole file when it does not.
+ */
+public interface TagWriter {
+    void update(File audioFile, TrackTags tags);
+
+    /**
+     * Writes a copy of the source with the new tags in place. Formats that can not write the tag while copying copy
+     * the file first and then update the copy.
+     */
+    default void copyWithTags(File source, File destination, TrackTags tags) {
+        try {
+            Files.copy(source.toPath(), destination.toPath(), REPLACE_EXISTING, COPY_ATTRIBUTES);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed copying with track number (" + tags.getTrackNumber() + ") to: " + destination.getName(), e);
+        }
+        update(destination, tags);
+    }
+
+    /**
+     * @return the track number in the tag of the file, or -1 when it does not have one or it can not be read cheaply
+     */
+    default int trackNumberOf(File audioFile) {
+        return -1;
+    }
+
+    /**
+     * Where the time spent reading and committing tags is recorded.
+     */
+    default void setMetrics(RunMetrics metrics) {
+    }
+
+    /**
+     * Where sources are parsed, by the writers that read the whole tag of a source before writing a copy of it.
+     */
+    default void setAudioFileCache(AudioFileCache audioFileCache) {
+    }
+}
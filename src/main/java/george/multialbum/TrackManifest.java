@@ -0,0 +1,256 @@
+package george.multialbum;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Remembers what was written to an output directory, so a re-run only has to touch the tracks that changed.
+ * <p>
+ * Stored as one tab separated line per output file: name, source size, source last modified, source sha256 (or "-")
+ * and the signature of the tags that were written.
+ * <p>
+ * Every track is also appended to a journal as soon as it is done, the journal is replaced by the manifest once the
+ * whole run is saved. When a run dies before that, loading the manifest with {@code resume} replays the journal, so
+ * the tracks that were finished are not copied and numbered again.
+ * <p>
+ * The journal is kept open while tracks are recorded, so a manifest has to be closed once its run is over, saved or
+ * not. Closing it leaves the journal where it is, for a later run to resume from.
+ */
+public class TrackManifest implements Closeable {
+    public static final String FILE_NAME = ".george-manifest";
+    public static final String JOURNAL_FILE_NAME = ".george-journal";
+    private static final String NO_HASH = "-";
+
+    private final File file;
+    private final File journalFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private FileChannel journal;
+
+    private TrackManifest(File outputDir) {
+        this.file = new File(outputDir, FILE_NAME);
+        this.journalFile = new File(outputDir, JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * @param resume whether to replay the journal of a run that did not finish, otherwise it is thrown away
+     */
+    public static TrackManifest load(File outputDir, boolean resume) {
+        TrackManifest manifest = new TrackManifest(outputDir);
+        if (manifest.file.exists()) {
+            manifest.read(manifest.file, false);
+        }
+
+        if (resume && manifest.journalFile.exists()) {
+            manifest.read(manifest.journalFile, true);
+        } else if (!manifest.journalFile.delete() && manifest.journalFile.exists()) {
+            throw new IllegalStateException("Failed deleting journal: " + manifest.journalFile.getAbsolutePath());
+        }
+        return manifest;
+    }
+
+    /**
+     * @param lenient whether to skip lines that can not be parsed, like the last line of a journal that was cut off
+     */
+    private void read(File source, boolean lenient) {
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t");
+                if (columns.length != 5) {
+                    continue;
+                }
+                try {
+                    Entry entry = new Entry(Long.parseLong(columns[1]), Long.parseLong(columns[2]),
+                            NO_HASH.equals(columns[3]) ? null : columns[3], columns[4]);
+                    entries.put(columns[0], entry);
+                } catch (NumberFormatException e) {
+                    if (!lenient) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Failed reading manifest: " + source.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Tells if the output has to be copied again, which does not depend on the track number, so it can be known
+     * before all the tracks of the album are listed and numbered.
+     */
+    public boolean sourceChanged(File source, File outputFile, boolean hash) {
+        Entry entry = entries.get(outputFile.getName());
+
+        if (entry == null || !outputFile.exists() || entry.size != source.length() || entry.lastModified != source.lastModified()) {
+            return true;
+        }
+        return hash && entry.sha256 != null && !entry.sha256.equals(sha256Of(source));
+    }
+
+    /**
+     * @return whether the output of a track whose source did not change has to get any of the tags written again
+     */
+    public boolean tagsChanged(RenumberedTrack track, TrackTags tags) {
+        Entry entry = entries.get(track.getOutputFile().getName());
+        return entry == null || !entry.tags.equals(tags.getSignature());
+    }
+
+    /**
+     * Remembers the track with every field that was written to its tag, so a later run writes them again as soon as
+     * any of them changes. The track is appended to the journal, which is flushed to disk before this returns.
+     */
+    public void record(RenumberedTrack track, TrackTags tags, boolean hash) {
+        File source = track.getInputFile();
+        Entry entry = new Entry(source.length(), source.lastModified(), hash ? sha256Of(source) : null, tags.getSignature());
+        String name = track.getOutputFile().getName();
+        appendToJournal(entry.toLine(name));
+        entries.put(name, entry);
+    }
+
+    private synchronized void appendToJournal(String line) {
+        try {
+            if (journal == null) {
+                // a run that died while appending can leave a partial line behind, which must not swallow this one
+                boolean partialLine = !endsWithNewLine(journalFile);
+                journal = FileChannel.open(journalFile.toPath(), CREATE, WRITE, APPEND);
+                if (partialLine) {
+                    journal.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed writing journal: " + journalFile.getAbsolutePath(), e);
+        }
+    }
+
+    private boolean endsWithNewLine(File file) throws IOException {
+        if (file.length() == 0) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Writes the manifest next to its final location and then moves it into place, so a crash never leaves a
+     * half written manifest behind. The journal is deleted once the manifest is in place.
+     */
+    public synchronized void save() {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                writer.write(entry.getValue().toLine(entry.getKey()));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed writing manifest: " + temp.getAbsolutePath(), e);
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed writing manifest: " + file.getAbsolutePath(), e);
+        }
+
+        close();
+        try {
+            Files.deleteIfExists(journalFile.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed deleting journal: " + journalFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Closes the journal, recording another track opens it again.
+     */
+    @Override
+    public synchronized void close() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed closing journal: " + journalFile.getAbsolutePath(), e);
+        } finally {
+            journal = null;
+        }
+    }
+
+    /**
+     * Forgets about the output of the track, so the next run copies and numbers it again.
+     */
+    public void forget(RenumberedTrack track) {
+        entries.remove(track.getOutputFile().getName());
+    }
+
+    /**
+     * Forgets about every output file that is not part of the given tracks anymore.
+     */
+    public void retainOnly(Iterable<RenumberedTrack> tracks) {
+        Map<String, Entry> retained = new TreeMap<>();
+        for (RenumberedTrack track : tracks) {
+            String name = track.getOutputFile().getName();
+            if (entries.containsKey(name)) {
+                retained.put(name, entries.get(name));
+            }
+        }
+        entries.clear();
+        entries.putAll(retained);
+    }
+
+    private String sha256Of(File source) {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(source))) {
+            return DigestUtils.sha256Hex(input);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed hashing: " + source.getAbsolutePath(), e);
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+        private final String tags;
+
+        private Entry(long size, long lastModified, String sha256, String tags) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.tags = tags;
+        }
+
+        private String toLine(String name) {
+            return name + "\t" + size + "\t" + lastModified + "\t" + (sha256 == null ? NO_HASH : sha256) + "\t" + tags;
+        }
+    }
+}
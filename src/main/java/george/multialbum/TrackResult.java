@@ -0,0 +1,116 @@
+package george.multialbum;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * What became of a single track of an album that was renumbered.
+ */
+public class TrackResult {
+    public enum Status {
+        /**
+         * Copied or tagged, and recorded in the manifest.
+         */
+        WRITTEN,
+        /**
+         * Neither the source nor the tags changed since the last run, so the output was left as it was.
+         */
+        UNCHANGED,
+        /**
+         * Kept failing, so it is left out of the manifest and the next run tries it again.
+         */
+        QUARANTINED,
+        /**
+         * The audio of the output does not match the one of the source, so it is left out of the manifest and the
+         * next run copies it again.
+         */
+        VERIFICATION_FAILED
+    }
+
+    private final Status status;
+    private final RenumberedTrack track;
+    private final File file;
+    private final String reason;
+    private final Throwable cause;
+
+    private TrackResult(Status status, RenumberedTrack track, File file, String reason, Throwable cause) {
+        this.status = status;
+        this.track = track;
+        this.file = file;
+        this.reason = reason;
+        this.cause = cause;
+    }
+
+    public static TrackResult written(RenumberedTrack track) {
+        return new TrackResult(Status.WRITTEN, track, track.getOutputFile(), null, null);
+    }
+
+    public static TrackResult unchanged(RenumberedTrack track) {
+        return new TrackResult(Status.UNCHANGED, track, track.getOutputFile(), null, null);
+    }
+
+    /**
+     * @param file the source or the output, whichever kept failing
+     */
+    public static TrackResult quarantined(RenumberedTrack track, File file, Throwable cause) {
+        return new TrackResult(Status.QUARANTINED, track, file, cause.getMessage(), cause);
+    }
+
+    public static TrackResult verificationFailed(RenumberedTrack track, String reason) {
+        return new TrackResult(Status.VERIFICATION_FAILED, track, track.getOutputFile(), reason, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFailed() {
+        return status == Status.QUARANTINED || status == Status.VERIFICATION_FAILED;
+    }
+
+    public RenumberedTrack getTrack() {
+        return track;
+    }
+
+    /**
+     * @return the file that failed, or the output of a track that did not
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return why the track failed, or null when it did not
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the error the track was quarantined for, or null when it was not
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TrackResult that = (TrackResult) o;
+        return status == that.status &&
+                track.equals(that.track) &&
+                file.equals(that.file) &&
+                Objects.equals(reason, that.reason);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, track, file, reason);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackResult{" + status + " " + file + (reason == null ? "" : ": " + reason) + "}";
+    }
+}
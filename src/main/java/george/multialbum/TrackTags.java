@@ -0,0 +1,147 @@
+package george.multialbum;
+
+import org.jaudiotagger.tag.FieldKey;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Every field written to the tag of one track, so a tag writer reads and commits the tag only once no matter how many
+ * fields change. Only the track number is always set; the track total, the disc (the disks of the album are collapsed
+ * into a single one) and the album level fields are written when they are set.
+ */
+public class TrackTags {
+    private final String trackNumber;
+    private String trackTotal;
+    private String discNumber;
+    private String discTotal;
+    private final Map<AlbumField, String> albumFields = new EnumMap<>(AlbumField.class);
+
+    public TrackTags(String trackNumber) {
+        this.trackNumber = trackNumber;
+    }
+
+    public TrackTags setTrackTotal(String trackTotal) {
+        this.trackTotal = trackTotal;
+        return this;
+    }
+
+    public TrackTags setDisc(String discNumber, String discTotal) {
+        this.discNumber = discNumber;
+        this.discTotal = discTotal;
+        return this;
+    }
+
+    public TrackTags setAlbumField(AlbumField field, String value) {
+        albumFields.put(field, value);
+        return this;
+    }
+
+    public String getTrackNumber() {
+        return trackNumber;
+    }
+
+    /**
+     * @return the number of tracks in the album, or null when it is not written
+     */
+    public String getTrackTotal() {
+        return trackTotal;
+    }
+
+    /**
+     * @return the disc number, or null when it is not written
+     */
+    public String getDiscNumber() {
+        return discNumber;
+    }
+
+    /**
+     * @return the number of discs, or null when it is not written
+     */
+    public String getDiscTotal() {
+        return discTotal;
+    }
+
+    public Map<AlbumField, String> getAlbumFields() {
+        return Collections.unmodifiableMap(albumFields);
+    }
+
+    /**
+     * Tells if the track number is all there is to write, which every format specific writer can do in place.
+     */
+    public boolean isTrackNumberOnly() {
+        return trackTotal == null && discNumber == null && discTotal == null && albumFields.isEmpty();
+    }
+
+    /**
+     * @return a single line describing every field, which is just the track number when that is all there is to write
+     */
+    public String getSignature() {
+        if (isTrackNumberOnly()) {
+            return trackNumber;
+        }
+        StringBuilder signature = new StringBuilder(trackNumber);
+        if (trackTotal != null) {
+            signature.append("|total=").append(trackTotal);
+        }
+        if (discNumber != null || discTotal != null) {
+            signature.append("|disc=").append(discNumber).append('/').append(discTotal);
+        }
+        albumFields.forEach((field, value) -> signature.append('|').append(field).append('=').append(value));
+        return signature.toString().replaceAll("[\t\r\n]", " ");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TrackTags that = (TrackTags) o;
+        return trackNumber.equals(that.trackNumber) &&
+                Objects.equals(trackTotal, that.trackTotal) &&
+                Objects.equals(discNumber, that.discNumber) &&
+                Objects.equals(discTotal, that.discTotal) &&
+                albumFields.equals(that.albumFields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(trackNumber, trackTotal, discNumber, discTotal, albumFields);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackTags{" + getSignature() + '}';
+    }
+
+    /**
+     * The fields that are the same for every track of the album, with what each format calls them.
+     */
+    public enum AlbumField {
+        ALBUM(FieldKey.ALBUM, "ALBUM", "TALB"),
+        ALBUM_ARTIST(FieldKey.ALBUM_ARTIST, "ALBUMARTIST", "TPE2");
+
+        private final FieldKey fieldKey;
+        private final String vorbisKey;
+        private final String id3FrameId;
+
+        AlbumField(FieldKey fieldKey, String vorbisKey, String id3FrameId) {
+            this.fieldKey = fieldKey;
+            this.vorbisKey = vorbisKey;
+            this.id3FrameId = id3FrameId;
+        }
+
+        public FieldKey getFieldKey() {
+            return fieldKey;
+        }
+
+        public String getVorbisKey() {
+            return vorbisKey;
+        }
+
+        public String getId3FrameId() {
+            return id3FrameId;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Rewrites the VORBIS_COMMENT block of a FLAC file in place, with every field of the tags at once. When the new comment
+ * is a different size, the PADDING block right after it grows or shrinks to make up for it, so the audio frames never
+ * move. Files without a comment block, or without padding to take up the difference, get their tag rewritten by
+ * jaudiotagger.
+ */
+public class UpdateTrackNumberInFlac implements TagWriter {
+    private static final byte[] MARKER = "fLaC".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int BLOCK_HEADER_SIZE = 4;
+    private static final int MAX_BLOCK_SIZE = 0xFFFFFF;
+    private static final int LAST_BLOCK = 0x80;
+    private static final int PADDING = 1;
+    private static final int VORBIS_COMMENT = 4;
+
+    private final RewriteTrackNumberInTag rewriteTrackNumberInTag = new RewriteTrackNumberInTag();
+    private RunMetrics metrics = new RunMetrics();
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        rewriteTrackNumberInTag.setMetrics(metrics);
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        long start = System.nanoTime();
+        if (patch(audioFile, tags)) {
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, audioFile, System.nanoTime() - start);
+            return;
+        }
+        rewriteTrackNumberInTag.update(audioFile, tags);
+    }
+
+    @Override
+    public int trackNumberOf(File audioFile) {
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ)) {
+            List<Block> blocks = readBlocks(channel);
+            Block comment = find(blocks, VORBIS_COMMENT);
+            VorbisComment vorbisComment = comment == null ? null : VorbisComment.read(read(channel, comment));
+            return vorbisComment == null ? -1 : vorbisComment.getTrackNumber();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed reading track number of: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return false when there is no room to change the file in place, in which case it was left untouched
+     */
+    public boolean patch(File audioFile, int trackNumber) {
+        return patch(audioFile, new TrackTags(String.valueOf(trackNumber)));
+    }
+
+    /**
+     * @return false when there is no room to change the file in place, in which case it was left untouched
+     */
+    public boolean patch(File audioFile, TrackTags tags) {
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ, WRITE)) {
+            List<Block> blocks = readBlocks(channel);
+            Block comment = find(blocks, VORBIS_COMMENT);
+            if (comment == null) {
+                return false;
+            }
+
+            VorbisComment vorbisComment = VorbisComment.read(read(channel, comment));
+            if (vorbisComment == null) {
+                return false;
+            }
+            vorbisComment.set(tags, String.valueOf(Integer.parseInt(tags.getTrackNumber())));
+            byte[] newComment = vorbisComment.toBytes();
+
+            if (newComment.length == comment.size) {
+                write(channel, ByteBuffer.wrap(newComment), comment.start + BLOCK_HEADER_SIZE);
+                channel.force(false);
+                return true;
+            }
+
+            int index = blocks.indexOf(comment);
+            Block padding = index + 1 < blocks.size() ? blocks.get(index + 1) : null;
+            if (padding == null || padding.type != PADDING) {
+                return false;
+            }
+
+            long paddingSize = comment.size + padding.size - newComment.length;
+            if (paddingSize < 0 || newComment.length > MAX_BLOCK_SIZE) {
+                return false;
+            }
+
+            ByteBuffer blocksBuffer = ByteBuffer.allocate(BLOCK_HEADER_SIZE * 2 + comment.size + padding.size);
+            blocksBuffer.put(header(false, VORBIS_COMMENT, newComment.length));
+            blocksBuffer.put(newComment);
+            blocksBuffer.put(header(padding.last, PADDING, (int) paddingSize));
+            blocksBuffer.position(blocksBuffer.capacity());
+            blocksBuffer.flip();
+            write(channel, blocksBuffer, comment.start);
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed patching track number (" + tags.getTrackNumber() + ") for: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return the metadata blocks, or an empty list when the file does not start with the FLAC marker
+     */
+    private List<Block> readBlocks(FileChannel channel) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        ByteBuffer marker = ByteBuffer.allocate(MARKER.length);
+        channel.read(marker, 0);
+        if (!ByteBuffer.wrap(MARKER).equals(marker.flip())) {
+            return blocks;
+        }
+
+        long position = MARKER.length;
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        while (true) {
+            header.clear();
+            if (channel.read(header, position) < BLOCK_HEADER_SIZE) {
+                return new ArrayList<>();
+            }
+            int flags = header.get(0) & 0xFF;
+            int size = (header.get(1) & 0xFF) << 16 | (header.get(2) & 0xFF) << 8 | header.get(3) & 0xFF;
+            Block block = new Block(position, flags & ~LAST_BLOCK, size, (flags & LAST_BLOCK) != 0);
+            if (position + BLOCK_HEADER_SIZE + size > channel.size()) {
+                return new ArrayList<>();
+            }
+            blocks.add(block);
+            if (block.last) {
+                return blocks;
+            }
+            position += BLOCK_HEADER_SIZE + size;
+        }
+    }
+
+    private Block find(List<Block> blocks, int type) {
+        for (Block block : blocks) {
+            if (block.type == type) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer read(FileChannel channel, Block block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(block.size);
+        while (buffer.hasRemaining() && channel.read(buffer, block.start + BLOCK_HEADER_SIZE + buffer.position()) >= 0) {
+            // keep reading until the block is complete
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private byte[] header(boolean last, int type, int size) {
+        return new byte[]{(byte) ((last ? LAST_BLOCK : 0) | type), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size};
+    }
+
+    private static class Block {
+        private final long start;
+        private final int type;
+        private final int size;
+        private final boolean last;
+
+        private Block(long start, int type, int size, boolean last) {
+            this.start = start;
+            this.type = type;
+            this.size = size;
+            this.last = last;
+        }
+    }
+}
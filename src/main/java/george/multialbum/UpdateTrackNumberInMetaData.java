@@ -1,21 +1,106 @@
 package george.multialbum;
 
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.tag.FieldKey;
-import org.jaudiotagger.tag.Tag;
+import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
-public class UpdateTrackNumberInMetaData {
-    public void update(File audioFile, String trackNumber) {
-        try {
-            AudioFile f = AudioFileIO.read(audioFile);
-            Tag tag = f.getTag();
-            tag.setField(FieldKey.TRACK, trackNumber);
-            f.commit();
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed updating track number (" + trackNumber + ") for: " + audioFile.getName(), e);
+/**
+ * Hands every file to the {@link TagWriter} registered for its extension. Files with an extension nobody registered
+ * for are left to jaudiotagger.
+ * <p>
+ * A writer is only created once the first file of its format is tagged, so a run over M4A files never loads the
+ * writers of the other formats.
+ */
+public class UpdateTrackNumberInMetaData implements TagWriter {
+    public static final List<String> AUDIO_FILE_EXTENSIONS = Collections.unmodifiableList(Arrays.asList("m4a", "mp3", "flac", "ogg"));
+
+    private final Map<String, Supplier<TagWriter>> factories = new LinkedHashMap<>();
+    private final Map<String, TagWriter> writers = new ConcurrentHashMap<>();
+    private final TagWriter fallback = new RewriteTrackNumberInTag();
+    private volatile RunMetrics metrics;
+    private volatile AudioFileCache audioFileCache;
+
+    public UpdateTrackNumberInMetaData() {
+        register("m4a", UpdateTrackNumberInMp4::new);
+        register("mp3", UpdateTrackNumberInMp3::new);
+        register("flac", UpdateTrackNumberInFlac::new);
+        register("ogg", UpdateTrackNumberInOgg::new);
+    }
+
+    /**
+     * @param extension without the '.'
+     * @param writer    creates the writer, the first time a file with the extension is tagged
+     */
+    public void register(String extension, Supplier<TagWriter> writer) {
+        String key = extension.toLowerCase(Locale.ROOT);
+        factories.put(key, writer);
+        writers.remove(key);
+    }
+
+    public Set<String> getExtensions() {
+        return Collections.unmodifiableSet(factories.keySet());
+    }
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        fallback.setMetrics(metrics);
+        for (TagWriter writer : writers.values()) {
+            writer.setMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void setAudioFileCache(AudioFileCache audioFileCache) {
+        this.audioFileCache = audioFileCache;
+        fallback.setAudioFileCache(audioFileCache);
+        for (TagWriter writer : writers.values()) {
+            writer.setAudioFileCache(audioFileCache);
+        }
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        writerFor(audioFile).update(audioFile, tags);
+    }
+
+    /**
+     * The writer is picked by the extension of the source, since the destination may be a part file.
+     */
+    @Override
+    public void copyWithTags(File source, File destination, TrackTags tags) {
+        writerFor(source).copyWithTags(source, destination, tags);
+    }
+
+    @Override
+    public int trackNumberOf(File audioFile) {
+        return writerFor(audioFile).trackNumberOf(audioFile);
+    }
+
+    private TagWriter writerFor(File audioFile) {
+        String extension = FilenameUtils.getExtension(audioFile.getName()).toLowerCase(Locale.ROOT);
+        Supplier<TagWriter> factory = factories.get(extension);
+        if (factory == null) {
+            return fallback;
         }
+        return writers.computeIfAbsent(extension, (key) -> {
+            TagWriter writer = factory.get();
+            if (metrics != null) {
+                writer.setMetrics(metrics);
+            }
+            if (audioFileCache != null) {
+                writer.setAudioFileCache(audioFileCache);
+            }
+            return writer;
+        });
     }
 }
@@ -0,0 +1,319 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Rewrites the frames of an ID3v2.3 or ID3v2.4 tag in place with new TRCK, TPOS and album frames, using up the
+ * padding the tag already has so the audio never moves. An ID3v1.1 tag at the end of the file gets the new track
+ * number and album as well.
+ * <p>
+ * Files without an ID3v2 tag, with one that has no room left, or with one that is unsynchronised or has an extended
+ * header get their tag rewritten by jaudiotagger.
+ */
+public class UpdateTrackNumberInMp3 implements TagWriter {
+    private static final int HEADER_SIZE = 10;
+    private static final int FRAME_HEADER_SIZE = 10;
+    private static final int UNSUPPORTED_TAG_FLAGS = 0x80 | 0x40 | 0x10;
+    private static final int V3_UNSUPPORTED_FRAME_FLAGS = 0x80 | 0x40 | 0x20;
+    private static final int V4_UNSUPPORTED_FRAME_FLAGS = 0x40 | 0x08 | 0x04 | 0x02 | 0x01;
+    private static final Pattern FRAME_ID = Pattern.compile("[A-Z0-9]{4}");
+    private static final String TRACK_FRAME = "TRCK";
+    private static final String DISC_FRAME = "TPOS";
+    private static final int ENCODING_ISO_8859_1 = 0;
+    private static final int ENCODING_UTF_16 = 1;
+    private static final int ENCODING_UTF_8 = 3;
+    private static final int ID3V1_SIZE = 128;
+    private static final int ID3V1_ALBUM_OFFSET = 63;
+    private static final int ID3V1_ALBUM_SIZE = 30;
+    private static final int ID3V1_TRACK_OFFSET = 126;
+
+    private final RewriteTrackNumberInTag rewriteTrackNumberInTag = new RewriteTrackNumberInTag();
+    private RunMetrics metrics = new RunMetrics();
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        rewriteTrackNumberInTag.setMetrics(metrics);
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        long start = System.nanoTime();
+        if (patch(audioFile, tags)) {
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, audioFile, System.nanoTime() - start);
+            return;
+        }
+        rewriteTrackNumberInTag.update(audioFile, tags);
+    }
+
+    @Override
+    public int trackNumberOf(File audioFile) {
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ)) {
+            Tag tag = readTag(channel);
+            Frame frame = tag == null ? null : tag.find(TRACK_FRAME);
+            if (frame == null) {
+                return -1;
+            }
+            String text = tag.textOf(frame);
+            int end = 0;
+            while (end < text.length() && end < 9 && Character.isDigit(text.charAt(end))) {
+                end++;
+            }
+            return end == 0 ? -1 : Integer.parseInt(text.substring(0, end));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed reading track number of: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return false when the tag has no room for the new track number, in which case the file was left untouched
+     */
+    public boolean patch(File audioFile, int trackNumber) {
+        return patch(audioFile, new TrackTags(String.valueOf(trackNumber)));
+    }
+
+    /**
+     * @return false when the tag has no room for the new frames, in which case the file was left untouched
+     */
+    public boolean patch(File audioFile, TrackTags tags) {
+        int trackNumber = Integer.parseInt(tags.getTrackNumber());
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ, WRITE)) {
+            Tag tag = readTag(channel);
+            if (tag == null) {
+                return false;
+            }
+
+            Map<String, String> texts = textFrames(tag, tags, trackNumber);
+            for (Frame frame : tag.frames) {
+                if (texts.containsKey(frame.id) && (frame.flags & (tag.version == 3 ? V3_UNSUPPORTED_FRAME_FLAGS : V4_UNSUPPORTED_FRAME_FLAGS)) != 0) {
+                    return false;
+                }
+            }
+
+            ByteArrayOutputStream frames = new ByteArrayOutputStream(tag.body.length);
+            Set<String> written = new HashSet<>();
+            for (Frame frame : tag.frames) {
+                if (!texts.containsKey(frame.id)) {
+                    frames.write(tag.body, frame.start, FRAME_HEADER_SIZE + frame.size);
+                } else if (written.add(frame.id)) {
+                    writeTextFrame(frames, tag.version, frame.id, texts.get(frame.id));
+                }
+            }
+            for (Map.Entry<String, String> text : texts.entrySet()) {
+                if (!written.contains(text.getKey())) {
+                    writeTextFrame(frames, tag.version, text.getKey(), text.getValue());
+                }
+            }
+            if (frames.size() > tag.body.length) {
+                return false;
+            }
+
+            // whatever is left of the tag becomes padding
+            ByteBuffer body = ByteBuffer.allocate(tag.body.length);
+            body.put(frames.toByteArray());
+            body.position(body.capacity());
+            body.flip();
+            while (body.hasRemaining()) {
+                channel.write(body, HEADER_SIZE + body.position());
+            }
+            patchId3v1(channel, trackNumber, tags.getAlbumFields().get(TrackTags.AlbumField.ALBUM));
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed patching track number (" + trackNumber + ") for: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return the text of every frame to write, by frame id
+     */
+    private Map<String, String> textFrames(Tag tag, TrackTags tags, int trackNumber) {
+        Map<String, String> texts = new LinkedHashMap<>();
+        if (tags.getTrackTotal() != null) {
+            texts.put(TRACK_FRAME, trackNumber + "/" + Integer.parseInt(tags.getTrackTotal()));
+        } else {
+            // keep the total the track number had, like the "/12" of "3/12"
+            Frame oldFrame = tag.find(TRACK_FRAME);
+            String oldText = oldFrame == null ? "" : tag.textOf(oldFrame);
+            int slash = oldText.indexOf('/');
+            texts.put(TRACK_FRAME, trackNumber + (slash < 0 ? "" : oldText.substring(slash)));
+        }
+        if (tags.getDiscNumber() != null) {
+            texts.put(DISC_FRAME, tags.getDiscNumber() + (tags.getDiscTotal() == null ? "" : "/" + tags.getDiscTotal()));
+        }
+        tags.getAlbumFields().forEach((field, value) -> texts.put(field.getId3FrameId(), value));
+        return texts;
+    }
+
+    /**
+     * ID3v1.1 keeps the track number in the last byte of the comment, when the byte before it is zero.
+     *
+     * @param album left as it is when null
+     */
+    private void patchId3v1(FileChannel channel, int trackNumber, String album) throws IOException {
+        if (channel.size() < ID3V1_SIZE) {
+            return;
+        }
+        long start = channel.size() - ID3V1_SIZE;
+        ByteBuffer tag = ByteBuffer.allocate(ID3V1_SIZE);
+        channel.read(tag, start);
+        if (tag.get(0) != 'T' || tag.get(1) != 'A' || tag.get(2) != 'G') {
+            return;
+        }
+
+        if (trackNumber <= 255 && tag.get(ID3V1_TRACK_OFFSET - 1) == 0) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) trackNumber}), start + ID3V1_TRACK_OFFSET);
+        }
+        if (album != null) {
+            byte[] value = album.getBytes(StandardCharsets.ISO_8859_1);
+            channel.write(ByteBuffer.wrap(Arrays.copyOf(value, ID3V1_ALBUM_SIZE)), start + ID3V1_ALBUM_OFFSET);
+        }
+    }
+
+    /**
+     * Text that fits in ISO-8859-1 is written as such, the rest as UTF-8, which only ID3v2.4 knows, or UTF-16.
+     */
+    private void writeTextFrame(ByteArrayOutputStream frames, int version, String id, String text) {
+        int encoding = ENCODING_ISO_8859_1;
+        Charset charset = StandardCharsets.ISO_8859_1;
+        if (!charset.newEncoder().canEncode(text)) {
+            encoding = version == 3 ? ENCODING_UTF_16 : ENCODING_UTF_8;
+            charset = version == 3 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8;
+        }
+
+        byte[] value = text.getBytes(charset);
+        int size = value.length + 1;
+        byte[] header = new byte[FRAME_HEADER_SIZE];
+        System.arraycopy(id.getBytes(StandardCharsets.ISO_8859_1), 0, header, 0, 4);
+        ByteBuffer.wrap(header, 4, 4).putInt(version == 3 ? size : toSyncSafe(size));
+        frames.write(header, 0, header.length);
+        frames.write(encoding);
+        frames.write(value, 0, value.length);
+    }
+
+    /**
+     * @return the tag, or null when there is none or it can not be changed in place
+     */
+    private Tag readTag(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.hasRemaining() || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return null;
+        }
+
+        int version = header.get(3);
+        int flags = header.get(5) & 0xFF;
+        int size = fromSyncSafe(header.getInt(6));
+        if ((version != 3 && version != 4) || (flags & UNSUPPORTED_TAG_FLAGS) != 0 || size < 0
+                || HEADER_SIZE + (long) size > channel.size()) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(size);
+        while (body.hasRemaining() && channel.read(body, HEADER_SIZE + body.position()) >= 0) {
+            // keep reading until the tag is complete
+        }
+
+        Tag tag = new Tag(version, body.array());
+        int position = 0;
+        while (position + FRAME_HEADER_SIZE <= size && tag.body[position] != 0) {
+            ByteBuffer frameHeader = ByteBuffer.wrap(tag.body, position, FRAME_HEADER_SIZE);
+            String id = new String(tag.body, position, 4, StandardCharsets.ISO_8859_1);
+            int frameSize = version == 3 ? frameHeader.getInt(position + 4) : fromSyncSafe(frameHeader.getInt(position + 4));
+            if (!FRAME_ID.matcher(id).matches() || frameSize < 0 || position + FRAME_HEADER_SIZE + (long) frameSize > size) {
+                return null;
+            }
+            tag.frames.add(new Frame(id, position, frameSize, frameHeader.getShort(position + 8) & 0xFF));
+            position += FRAME_HEADER_SIZE + frameSize;
+        }
+        return tag;
+    }
+
+    private static int fromSyncSafe(int value) {
+        if ((value & 0x80808080) != 0) {
+            return -1;
+        }
+        return (value & 0x7F000000) >> 3 | (value & 0x7F0000) >> 2 | (value & 0x7F00) >> 1 | value & 0x7F;
+    }
+
+    private static int toSyncSafe(int value) {
+        return (value & 0xFE00000) << 3 | (value & 0x1FC000) << 2 | (value & 0x3F80) << 1 | value & 0x7F;
+    }
+
+    private static class Tag {
+        private final int version;
+        private final byte[] body;
+        private final List<Frame> frames = new ArrayList<>();
+
+        private Tag(int version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+
+        private Frame find(String id) {
+            for (Frame frame : frames) {
+                if (frame.id.equals(id)) {
+                    return frame;
+                }
+            }
+            return null;
+        }
+
+        private String textOf(Frame frame) {
+            if (frame.size < 1) {
+                return "";
+            }
+            Charset charset;
+            switch (body[frame.start + FRAME_HEADER_SIZE]) {
+                case 1:
+                    charset = StandardCharsets.UTF_16;
+                    break;
+                case 2:
+                    charset = StandardCharsets.UTF_16BE;
+                    break;
+                case 3:
+                    charset = StandardCharsets.UTF_8;
+                    break;
+                default:
+                    charset = StandardCharsets.ISO_8859_1;
+            }
+            String text = new String(body, frame.start + FRAME_HEADER_SIZE + 1, frame.size - 1, charset);
+            int end = text.indexOf('\0');
+            return end < 0 ? text : text.substring(0, end);
+        }
+    }
+
+    private static class Frame {
+        private final String id;
+        private final int start;
+        private final int size;
+        /**
+         * The second flags byte, which says how the frame is encoded.
+         */
+        private final int flags;
+
+        private Frame(String id, int start, int size, int flags) {
+            this.id = id;
+            this.start = start;
+            this.size = size;
+            this.flags = flags;
+        }
+    }
+}
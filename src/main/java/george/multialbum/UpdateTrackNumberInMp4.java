@@ -0,0 +1,89 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.mp4.Mp4TagWriter;
+import org.jaudiotagger.tag.FieldDataInvalidException;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagField;
+import org.jaudiotagger.tag.mp4.Mp4Tag;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+
+/**
+ * Patches the trkn and disk atoms of M4A files in place. Files without them, or tags with album fields (which are
+ * text of any length), get their tag rewritten by jaudiotagger.
+ */
+public class UpdateTrackNumberInMp4 implements TagWriter {
+    private final PatchTrackNumberInMp4Atom patchTrackNumberInMp4Atom = new PatchTrackNumberInMp4Atom();
+    private final RewriteTrackNumberInTag rewriteTrackNumberInTag = new RewriteTrackNumberInTag();
+    private RunMetrics metrics = new RunMetrics();
+    private AudioFileCache audioFileCache = new AudioFileCache(0);
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        rewriteTrackNumberInTag.setMetrics(metrics);
+    }
+
+    @Override
+    public void setAudioFileCache(AudioFileCache audioFileCache) {
+        this.audioFileCache = audioFileCache;
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        long start = System.nanoTime();
+        if (patchTrackNumberInMp4Atom.patch(audioFile, tags)) {
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, audioFile, System.nanoTime() - start);
+            return;
+        }
+        rewriteTrackNumberInTag.update(audioFile, tags);
+    }
+
+    /**
+     * Writes a copy of the source with the new tags already in place, so the destination is only written once. The
+     * source is parsed through the cache, a source that was parsed before only has its tag copied.
+     */
+    @Override
+    public void copyWithTags(File source, File destination, TrackTags tags) {
+        try {
+            long start = System.nanoTime();
+            AudioFile f = audioFileCache.read(source);
+            Tag tag = copyOf(f);
+            RewriteTrackNumberInTag.setFields(tag, tags);
+            metrics.record(RunMetrics.Stage.TAG_READ, destination, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (RandomAccessFile input = new RandomAccessFile(source, "r");
+                 RandomAccessFile output = new RandomAccessFile(destination, "rw")) {
+                output.setLength(0);
+                new Mp4TagWriter().write(tag, input, output);
+            }
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, destination, System.nanoTime() - start);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed copying with track number (" + tags.getTrackNumber() + ") to: " + destination.getName(), e);
+        }
+    }
+
+    @Override
+    public int trackNumberOf(File audioFile) {
+        return patchTrackNumberInMp4Atom.trackNumberOf(audioFile);
+    }
+
+    /**
+     * Setting a field replaces it instead of changing it, so a new tag holding the same fields leaves the tag of the
+     * cached file as it was.
+     */
+    private static Tag copyOf(AudioFile f) throws FieldDataInvalidException {
+        Tag copy = new Mp4Tag();
+        if (f.getTag() != null) {
+            Iterator<TagField> fields = f.getTag().getFields();
+            while (fields.hasNext()) {
+                copy.addField(fields.next());
+            }
+        }
+        return copy;
+    }
+}
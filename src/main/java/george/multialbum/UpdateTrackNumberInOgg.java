@@ -0,0 +1,289 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Overwrites the track number, and the other fields of the tags, in the comment header of an Ogg Vorbis (or Opus)
+ * file in place.
+ * <p>
+ * Ogg has no padding, any change in the size of the comment header moves every page after it. So the fast path only
+ * applies when the new track number takes as many bytes as the old one, which it always does when the old one was
+ * written zero padded (the new one is zero padded to the same width). Only the pages holding the comment header are
+ * written, with their checksums updated. Everything else gets its tag rewritten by jaudiotagger.
+ */
+public class UpdateTrackNumberInOgg implements TagWriter {
+    private static final byte[] CAPTURE_PATTERN = "OggS".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] VORBIS_COMMENT_HEADER = {3, 'v', 'o', 'r', 'b', 'i', 's'};
+    private static final byte[] OPUS_COMMENT_HEADER = "OpusTags".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int PAGE_HEADER_SIZE = 27;
+    private static final int CHECKSUM_OFFSET = 22;
+    private static final int SEGMENT_COUNT_OFFSET = 26;
+    private static final int COMMENT_PACKET = 1;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < CRC_TABLE.length; i++) {
+            int remainder = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                remainder = (remainder & 0x80000000) != 0 ? (remainder << 1) ^ 0x04C11DB7 : remainder << 1;
+            }
+            CRC_TABLE[i] = remainder;
+        }
+    }
+
+    private final RewriteTrackNumberInTag rewriteTrackNumberInTag = new RewriteTrackNumberInTag();
+    private RunMetrics metrics = new RunMetrics();
+
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        rewriteTrackNumberInTag.setMetrics(metrics);
+    }
+
+    @Override
+    public void update(File audioFile, TrackTags tags) {
+        long start = System.nanoTime();
+        if (patch(audioFile, tags)) {
+            metrics.record(RunMetrics.Stage.TAG_COMMIT, audioFile, System.nanoTime() - start);
+            return;
+        }
+        rewriteTrackNumberInTag.update(audioFile, tags);
+    }
+
+    @Override
+    public int trackNumberOf(File audioFile) {
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ)) {
+            CommentPacket packet = readCommentPacket(channel);
+            VorbisComment comment = packet == null ? null : packet.comment();
+            return comment == null ? -1 : comment.getTrackNumber();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed reading track number of: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return false when the new track number does not fit in the place of the old one, in which case the file was
+     * left untouched
+     */
+    public boolean patch(File audioFile, int trackNumber) {
+        return patch(audioFile, new TrackTags(String.valueOf(trackNumber)));
+    }
+
+    /**
+     * The other fields of the tags only fit when they are as long as the ones already in the file, like on every run
+     * after the first one.
+     *
+     * @return false when the new tags do not fit in the place of the old ones, in which case the file was left
+     * untouched
+     */
+    public boolean patch(File audioFile, TrackTags tags) {
+        try (FileChannel channel = FileChannel.open(audioFile.toPath(), READ, WRITE)) {
+            CommentPacket packet = readCommentPacket(channel);
+            VorbisComment comment = packet == null ? null : packet.comment();
+            if (comment == null || comment.getTrackNumber() < 0) {
+                return false;
+            }
+
+            String oldValue = comment.get(VorbisComment.TRACK_NUMBER);
+            String number = String.valueOf(Integer.parseInt(tags.getTrackNumber()));
+            int width = oldValue.length() - comment.getTrackNumberSuffix().length();
+            while (number.length() < width) {
+                number = "0" + number;
+            }
+            comment.set(tags, number);
+
+            byte[] newPacket = packet.withComment(comment.toBytes());
+            if (newPacket.length != packet.bytes.length) {
+                return false;
+            }
+
+            int offset = 0;
+            for (Chunk chunk : packet.chunks) {
+                ByteBuffer buffer = ByteBuffer.wrap(newPacket, offset, chunk.length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, chunk.position + buffer.position() - offset);
+                }
+                offset += chunk.length;
+            }
+            for (Page page : packet.pages) {
+                updateChecksum(channel, page);
+            }
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed patching track number (" + tags.getTrackNumber() + ") for: " + audioFile.getName(), e);
+        }
+    }
+
+    /**
+     * @return the second packet of the stream, or null when the file is not an Ogg file
+     */
+    private CommentPacket readCommentPacket(FileChannel channel) throws IOException {
+        CommentPacket packet = new CommentPacket();
+        int packetIndex = 0;
+        long position = 0;
+
+        while (position + PAGE_HEADER_SIZE <= channel.size()) {
+            ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER_SIZE);
+            channel.read(header, position);
+            header.flip();
+            for (int i = 0; i < CAPTURE_PATTERN.length; i++) {
+                if (header.get(i) != CAPTURE_PATTERN[i]) {
+                    return null;
+                }
+            }
+
+            int segmentCount = header.get(SEGMENT_COUNT_OFFSET) & 0xFF;
+            ByteBuffer segments = ByteBuffer.allocate(segmentCount);
+            channel.read(segments, position + PAGE_HEADER_SIZE);
+            if (segments.hasRemaining()) {
+                return null;
+            }
+
+            int bodyLength = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                bodyLength += segments.get(i) & 0xFF;
+            }
+
+            Page page = new Page(position, PAGE_HEADER_SIZE + segmentCount + bodyLength);
+            long segmentPosition = position + PAGE_HEADER_SIZE + segmentCount;
+            for (int i = 0; i < segmentCount; i++) {
+                int segmentSize = segments.get(i) & 0xFF;
+                if (packetIndex == COMMENT_PACKET) {
+                    packet.add(page, segmentPosition, segmentSize);
+                }
+                segmentPosition += segmentSize;
+                if (segmentSize < 255) {
+                    packetIndex++;
+                    if (packetIndex > COMMENT_PACKET) {
+                        return packet.read(channel) ? packet : null;
+                    }
+                }
+            }
+            position = segmentPosition;
+        }
+        return null;
+    }
+
+    private void updateChecksum(FileChannel channel, Page page) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(page.length);
+        while (bytes.hasRemaining() && channel.read(bytes, page.start + bytes.position()) >= 0) {
+            // keep reading until the page is complete
+        }
+        bytes.putInt(CHECKSUM_OFFSET, 0);
+
+        int crc = 0;
+        for (int i = 0; i < bytes.capacity(); i++) {
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) & 0xFF) ^ (bytes.get(i) & 0xFF)];
+        }
+
+        ByteBuffer checksum = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(crc);
+        checksum.flip();
+        channel.write(checksum, page.start + CHECKSUM_OFFSET);
+    }
+
+    private static class CommentPacket {
+        private final List<Page> pages = new ArrayList<>();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private byte[] bytes;
+        private int headerSize;
+
+        private void add(Page page, long position, int length) {
+            if (pages.isEmpty() || pages.get(pages.size() - 1) != page) {
+                pages.add(page);
+            }
+            Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last != null && last.position + last.length == position) {
+                last.length += length;
+            } else {
+                chunks.add(new Chunk(position, length));
+            }
+        }
+
+        private boolean read(FileChannel channel) throws IOException {
+            int length = 0;
+            for (Chunk chunk : chunks) {
+                length += chunk.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (Chunk chunk : chunks) {
+                buffer.limit(buffer.position() + chunk.length);
+                channel.read(buffer, chunk.position);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+            }
+            bytes = buffer.array();
+
+            if (startsWith(VORBIS_COMMENT_HEADER)) {
+                headerSize = VORBIS_COMMENT_HEADER.length;
+            } else if (startsWith(OPUS_COMMENT_HEADER)) {
+                headerSize = OPUS_COMMENT_HEADER.length;
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private VorbisComment comment() {
+            return VorbisComment.read(ByteBuffer.wrap(bytes, headerSize, bytes.length - headerSize));
+        }
+
+        /**
+         * @return the packet with its comment replaced, keeping whatever came after the old comment (the framing bit)
+         */
+        private byte[] withComment(byte[] comment) {
+            ByteBuffer oldComment = ByteBuffer.wrap(bytes, headerSize, bytes.length - headerSize);
+            VorbisComment.read(oldComment);
+            int trailing = oldComment.remaining();
+
+            byte[] packet = new byte[headerSize + comment.length + trailing];
+            System.arraycopy(bytes, 0, packet, 0, headerSize);
+            System.arraycopy(comment, 0, packet, headerSize, comment.length);
+            System.arraycopy(bytes, bytes.length - trailing, packet, headerSize + comment.length, trailing);
+            return packet;
+        }
+
+        private boolean startsWith(byte[] prefix) {
+            if (bytes.length < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (bytes[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Page {
+        private final long start;
+        private final int length;
+
+        private Page(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private static class Chunk {
+        private final long position;
+        private int length;
+
+        private Chunk(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package george.multialbum;
+
+import java.io.File;
+import java.util.Map;
+
+public class VerificationFailedException extends RuntimeException {
+    public VerificationFailedException(Map<File, String> failures) {
+        super(failures.size() + " file(s) failed verification: " + failures.keySet());
+    }
+}
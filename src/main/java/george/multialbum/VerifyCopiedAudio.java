@@ -0,0 +1,59 @@
+package george.multialbum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Checks that the audio of every output file is still the audio of its source once the track number was written,
+ * so a copy that went bad on the way (a flaky network share, a full disk) does not go unnoticed.
+ * <p>
+ * Sources copied through {@link #copy(File, File, File)} are hashed while they are copied, the others are hashed when
+ * their output is verified. A run uses one of its own, so the hashes of one run are never mixed up with another.
+ * <p>
+ * The output is forced to its storage and opened again before it is hashed, so the hash is not taken from what is
+ * still waiting to be written. On a network share (SMB, NFS) the client may still serve the read from its own cache,
+ * so there it proves what the server acknowledged, not what a later read from another machine returns.
+ */
+public class VerifyCopiedAudio {
+    private final AudioPayload audioPayload = new AudioPayload();
+    private final Map<File, String> sourceHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Copies the source to the part file, remembering the hash of its audio for when the output is verified.
+     */
+    public void copy(File source, File partFile, File outputFile) throws IOException {
+        sourceHashes.put(outputFile, audioPayload.copyAndHash(source, partFile));
+    }
+
+    /**
+     * @return why the audio of the output does not match the one of the source, or null when it does
+     */
+    public String verify(File source, File outputFile) {
+        try {
+            String sourceHash = sourceHashes.remove(outputFile);
+            if (sourceHash == null) {
+                sourceHash = audioPayload.hashOf(source);
+            }
+            force(outputFile);
+            if (!sourceHash.equals(audioPayload.hashOf(outputFile))) {
+                return "the audio does not match the one of " + source.getAbsolutePath();
+            }
+            return null;
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        } catch (IOException e) {
+            return "failed writing it to storage: " + e.getMessage();
+        }
+    }
+
+    private void force(File outputFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(outputFile.toPath(), WRITE)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The "KEY=value" comments FLAC and Ogg Vorbis files keep their tags in: a vendor string followed by a list of
+ * comments, every length a little endian 32 bit number.
+ */
+public class VorbisComment {
+    public static final String TRACK_NUMBER = "TRACKNUMBER";
+    public static final String TRACK_TOTAL = "TRACKTOTAL";
+    public static final String DISC_NUMBER = "DISCNUMBER";
+    public static final String DISC_TOTAL = "DISCTOTAL";
+
+    private final byte[] vendor;
+    private final List<String> comments;
+
+    private VorbisComment(byte[] vendor, List<String> comments) {
+        this.vendor = vendor;
+        this.comments = comments;
+    }
+
+    /**
+     * Reads the comment starting at the position of the buffer and leaves the position right after it.
+     *
+     * @return null when the buffer does not hold a complete comment
+     */
+    public static VorbisComment read(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte[] vendor = bytes(buffer, buffer.getInt());
+            int count = buffer.getInt();
+            if (count < 0) {
+                return null;
+            }
+
+            List<String> comments = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                comments.add(new String(bytes(buffer, buffer.getInt()), StandardCharsets.UTF_8));
+            }
+            return new VorbisComment(vendor, comments);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * @return the value of the first comment with the key, or null when there is none
+     */
+    public String get(String key) {
+        for (String comment : comments) {
+            if (hasKey(comment, key)) {
+                return comment.substring(key.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces every comment with the key by a single one with the value, where the first one was, or at the end
+     * when there was none.
+     */
+    public void set(String key, String value) {
+        int position = -1;
+        for (int i = comments.size() - 1; i >= 0; i--) {
+            if (hasKey(comments.get(i), key)) {
+                comments.remove(i);
+                position = i;
+            }
+        }
+        comments.add(position < 0 ? comments.size() : position, key + "=" + value);
+    }
+
+    /**
+     * Sets every field of the tags. The track number is passed on its own, so a format can keep it as wide as the old
+     * one. Without a track total, whatever came after the old track number (like "/12") is kept.
+     */
+    public void set(TrackTags tags, String trackNumber) {
+        if (tags.getTrackTotal() == null) {
+            set(TRACK_NUMBER, trackNumber + getTrackNumberSuffix());
+        } else {
+            set(TRACK_NUMBER, trackNumber);
+            set(TRACK_TOTAL, String.valueOf(Integer.parseInt(tags.getTrackTotal())));
+        }
+        if (tags.getDiscNumber() != null) {
+            set(DISC_NUMBER, tags.getDiscNumber());
+        }
+        if (tags.getDiscTotal() != null) {
+            set(DISC_TOTAL, tags.getDiscTotal());
+        }
+        tags.getAlbumFields().forEach((field, value) -> set(field.getVorbisKey(), value));
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeInt(output, vendor.length);
+        output.write(vendor, 0, vendor.length);
+        writeInt(output, comments.size());
+        for (String comment : comments) {
+            byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+            writeInt(output, bytes.length);
+            output.write(bytes, 0, bytes.length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @return the number at the start of the track number comment, or -1 when there is none
+     */
+    public int getTrackNumber() {
+        String value = get(TRACK_NUMBER);
+        if (value == null) {
+            return -1;
+        }
+        int end = 0;
+        while (end < value.length() && end < 9 && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? -1 : Integer.parseInt(value.substring(0, end));
+    }
+
+    /**
+     * @return what comes after the track number, like "/12" for "3/12", so it survives a new track number
+     */
+    public String getTrackNumberSuffix() {
+        String value = get(TRACK_NUMBER);
+        int slash = value == null ? -1 : value.indexOf('/');
+        return slash < 0 ? "" : value.substring(slash);
+    }
+
+    private static boolean hasKey(String comment, String key) {
+        return comment.length() > key.length()
+                && comment.charAt(key.length()) == '='
+                && comment.substring(0, key.length()).toUpperCase(Locale.ROOT).equals(key);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+}
@@ -0,0 +1,193 @@
+package george.multialbum;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Watches an input directory for disk tracks being added or written to, and hands over an album once none of its
+ * files changed for the debounce time. Rippers write the tracks of an album one by one over several minutes, the
+ * debounce keeps an album from being renumbered after every single track.
+ * <p>
+ * In library mode every directory below the input directory is watched, including the ones made while watching, and
+ * each directory with disk tracks is an album of its own, like {@link FindAlbumsInLibrary} finds them.
+ */
+public class WatchForAlbums implements Closeable {
+    private final Predicate<Path> isDiskTrack;
+    private final Duration debounce;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Map<Path, Long> settlesAt = new LinkedHashMap<>();
+
+    private Path inputDir;
+    private Path outputDir;
+    private boolean library;
+
+    public WatchForAlbums(Predicate<Path> isDiskTrack, Duration debounce) {
+        this.isDiskTrack = isDiskTrack;
+        this.debounce = debounce;
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed watching for files", e);
+        }
+    }
+
+    /**
+     * Blocks until {@link #close()} is called or the thread is interrupted.
+     */
+    public void watch(File inputDir, File outputDir, boolean library, Consumer<Album> onAlbumSettled) {
+        this.inputDir = inputDir.toPath().toAbsolutePath().normalize();
+        this.outputDir = outputDir.toPath().toAbsolutePath().normalize();
+        this.library = library;
+
+        try {
+            register(this.inputDir);
+            while (true) {
+                WatchKey key = pollUntilAnAlbumSettles();
+                if (key != null) {
+                    handle(key);
+                }
+                for (Path albumDir : settledAlbums()) {
+                    onAlbumSettled.accept(albumOf(albumDir));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed, stop watching
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed watching: " + inputDir.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to stop watching for files", e);
+        }
+    }
+
+    private WatchKey pollUntilAnAlbumSettles() throws InterruptedException {
+        if (settlesAt.isEmpty()) {
+            return watchService.take();
+        }
+        long firstSettlesAt = Long.MAX_VALUE;
+        for (long at : settlesAt.values()) {
+            firstSettlesAt = Math.min(firstSettlesAt, at);
+        }
+        long wait = TimeUnit.NANOSECONDS.toMillis(firstSettlesAt - System.nanoTime());
+        return wait <= 0 ? watchService.poll() : watchService.poll(wait, TimeUnit.MILLISECONDS);
+    }
+
+    private void handle(WatchKey key) throws IOException {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events were lost, so any of the albums might have changed
+                if (library) {
+                    settleLaterIfItHasDiskTracks(inputDir);
+                } else {
+                    settleLater(inputDir);
+                }
+                continue;
+            }
+
+            Path changed = dir.resolve((Path) event.context());
+            if (library && event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                // tracks could have been moved in with the directory, before it was watched
+                try {
+                    register(changed);
+                    settleLaterIfItHasDiskTracks(changed);
+                } catch (NoSuchFileException | UncheckedIOException e) {
+                    // the directory was gone again before it could be watched
+                }
+            } else if (isDiskTrack.test(changed.getFileName())) {
+                settleLater(dir);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+        if (!library) {
+            return;
+        }
+
+        // the children are listed only once the directory is watched, so one made in between is not missed
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path child : children) {
+                if (!child.startsWith(outputDir)) {
+                    register(child);
+                }
+            }
+        }
+    }
+
+    private void settleLaterIfItHasDiskTracks(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            List<Path> albumDirs = walk.filter((file) -> !file.startsWith(outputDir))
+                    .filter(Files::isRegularFile)
+                    .filter((file) -> isDiskTrack.test(file.getFileName()))
+                    .map(Path::getParent)
+                    .distinct()
+                    .collect(toList());
+            albumDirs.forEach(this::settleLater);
+        }
+    }
+
+    private void settleLater(Path albumDir) {
+        settlesAt.put(albumDir, System.nanoTime() + debounce.toNanos());
+    }
+
+    private List<Path> settledAlbums() {
+        long now = System.nanoTime();
+        List<Path> settled = new ArrayList<>();
+        settlesAt.entrySet().removeIf((entry) -> {
+            if (entry.getValue() - now <= 0) {
+                settled.add(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        return settled;
+    }
+
+    private Album albumOf(Path dir) {
+        if (!library) {
+            return new Album(inputDir.toFile(), outputDir.toFile());
+        }
+        return new Album(dir.toFile(), outputDir.resolve(inputDir.relativize(dir)).toFile());
+    }
+}
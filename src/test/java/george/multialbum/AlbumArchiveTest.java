@@ -0,0 +1,77 @@
+package george.multialbum;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlbumArchiveTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void zip() throws Exception {
+        assertEntries(temp.resolve("album.zip").toFile());
+    }
+
+    @Test
+    public void tar() throws Exception {
+        assertEntries(temp.resolve("album.tar").toFile());
+    }
+
+    @Test
+    public void compressed_tar() throws Exception {
+        assertEntries(temp.resolve("album.tar.gz").toFile());
+        assertEntries(temp.resolve("album.tgz").toFile());
+    }
+
+    @Test
+    public void tar_with_a_long_name() throws Exception {
+        String longName = StringUtils.repeat("directory/", 12) + "1-01 first.m4a";
+        File file = new ArchiveFixture().entry(longName, "first").entry("1-02 second.m4a", "second").writeTo(temp.resolve("album.tar").toFile());
+
+        try (AlbumArchive archive = AlbumArchive.open(file)) {
+            assertEquals(Arrays.asList(longName, "1-02 second.m4a"), archive.list());
+        }
+    }
+
+    @Test
+    public void is_archive() throws Exception {
+        assertTrue(AlbumArchive.isArchive(new ArchiveFixture().writeTo(temp.resolve("album.ZIP").toFile())));
+        assertFalse(AlbumArchive.isArchive(temp.toFile()));
+        assertFalse(AlbumArchive.isArchive(temp.resolve("missing.zip").toFile()));
+        assertFalse(AlbumArchive.isArchive(new ArchiveFixture().writeTo(temp.resolve("album.rar").toFile())));
+    }
+
+    private void assertEntries(File file) throws Exception {
+        new ArchiveFixture()
+                .entry("album/1-01 first.m4a", "first")
+                .entry("album/cover.jpg", "cover")
+                .entry("album/2-01 second.m4a", StringUtils.repeat("second", 200))
+                .writeTo(file);
+
+        try (AlbumArchive archive = AlbumArchive.open(file)) {
+            assertEquals(Arrays.asList("album/1-01 first.m4a", "album/cover.jpg", "album/2-01 second.m4a"), archive.list());
+            assertEquals(Long.valueOf(5), archive.sizes().get("album/1-01 first.m4a"));
+            assertEquals(Long.valueOf(1200), archive.sizes().get("album/2-01 second.m4a"));
+
+            Map<String, String> read = new LinkedHashMap<>();
+            archive.read((name) -> name.endsWith(".m4a"),
+                    (name, content) -> read.put(name, IOUtils.toString(content, StandardCharsets.UTF_8)));
+
+            Map<String, String> expected = new LinkedHashMap<>();
+            expected.put("album/1-01 first.m4a", "first");
+            expected.put("album/2-01 second.m4a", StringUtils.repeat("second", 200));
+            assertEquals(expected, read);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AlbumRenumbererTest {
+    @TempDir
+    Path temp;
+    @Mock
+    private TagWriter tagWriter;
+
+    private Scheduler scheduler;
+    private AlbumRenumberer renumberer;
+    private File inputDir;
+    private File outputDir;
+
+    @BeforeEach
+    void setUp() {
+        inputDir = new File(temp.toFile(), "input");
+        outputDir = new File(temp.toFile(), "output");
+        inputDir.mkdirs();
+
+        scheduler = ExecutionEngine.FIXED.createScheduler(2);
+        renumberer = new AlbumRenumberer(scheduler);
+        renumberer.setTagWriter(tagWriter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    public void every_track_is_emitted_once_it_is_written() throws IOException {
+        writeTracks("1-01 a.m4a", "1-02 b.m4a", "2-01 c.m4a");
+
+        List<String> trackNumbers = renumberer.renumber(new Album(inputDir, outputDir), new RenumberOptions())
+                .doOnNext((result) -> assertEquals(TrackResult.Status.WRITTEN, result.getStatus()))
+                .map((result) -> result.getTrack().getTrackNumber())
+                .collectList()
+                .block();
+
+        assertEquals(asList("001", "002", "003"), trackNumbers.stream().sorted().collect(Collectors.toList()));
+        verify(tagWriter).update(new File(outputDir, "2-01 c.m4a"), new TrackTags("003"));
+        assertTrue(new File(outputDir, TrackManifest.FILE_NAME).exists());
+    }
+
+    @Test
+    public void tracks_that_did_not_change_are_emitted_as_unchanged() throws IOException {
+        writeTracks("1-01 a.m4a", "1-02 b.m4a");
+        Album album = new Album(inputDir, outputDir);
+        renumberer.renumber(album, new RenumberOptions()).blockLast();
+
+        List<TrackResult.Status> statuses = renumberer.renumber(album, new RenumberOptions())
+                .map(TrackResult::getStatus)
+                .collectList()
+                .block();
+
+        assertEquals(asList(TrackResult.Status.UNCHANGED, TrackResult.Status.UNCHANGED), statuses);
+    }
+
+    @Test
+    public void renumberAsync_completes_with_the_results_of_the_tracks() throws Exception {
+        writeTracks("1-01 a.m4a", "2-01 b.m4a");
+
+        List<TrackResult> tracks = renumberer.renumberAsync(new Album(inputDir, outputDir), new RenumberOptions())
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, tracks.size());
+    }
+
+    @Test
+    public void a_track_that_keeps_failing_is_emitted_as_quarantined_with_its_cause() throws IOException {
+        writeTracks("1-01 a.m4a", "1-02 b.m4a");
+        File failing = new File(outputDir, "1-02 b.m4a");
+        IllegalStateException cause = new IllegalStateException("broken tag");
+        lenient().doThrow(cause).when(tagWriter).update(eq(failing), any());
+
+        Map<TrackResult.Status, List<TrackResult>> results = renumberer.renumber(new Album(inputDir, outputDir), new RenumberOptions())
+                .collectList()
+                .block()
+                .stream()
+                .collect(Collectors.groupingBy(TrackResult::getStatus));
+
+        assertEquals(singletonList(new File(outputDir, "1-01 a.m4a")),
+                results.get(TrackResult.Status.WRITTEN).stream().map(TrackResult::getFile).collect(Collectors.toList()));
+        TrackResult quarantined = results.get(TrackResult.Status.QUARANTINED).get(0);
+        assertEquals(failing, quarantined.getFile());
+        assertSame(cause, quarantined.getCause());
+        assertEquals(1, results.get(TrackResult.Status.QUARANTINED).size());
+    }
+
+    @Test
+    public void failures_of_one_album_are_not_kept_for_the_next() throws IOException {
+        writeTracks("1-01 a.m4a");
+        File failing = new File(outputDir, "1-01 a.m4a");
+        lenient().doThrow(new IllegalStateException("broken tag")).doNothing().when(tagWriter).update(eq(failing), any());
+        Album album = new Album(inputDir, outputDir);
+        RenumberOptions options = new RenumberOptions();
+
+        assertEquals(singletonList(TrackResult.Status.QUARANTINED), renumberer.renumber(album, options).map(TrackResult::getStatus).collectList().block());
+        assertEquals(singletonList(TrackResult.Status.WRITTEN), renumberer.renumber(album, options).map(TrackResult::getStatus).collectList().block());
+    }
+
+    @Test
+    public void the_listener_hears_the_progress_of_the_album() throws IOException {
+        writeTracks("1-01 a.m4a", "2-01 b.m4a");
+        RenumberListener listener = mock(RenumberListener.class);
+        renumberer.setListener(listener);
+        Album album = new Album(inputDir, outputDir);
+
+        renumberer.renumber(album, new RenumberOptions()).blockLast();
+
+        verify(listener).numbered(album, 2, 0);
+        verify(listener, times(2)).copied(eq(album), any());
+        verify(listener, times(2)).renumbered(eq(album), any());
+    }
+
+    private void writeTracks(String... names) throws IOException {
+        for (String name : names) {
+            FileUtils.writeStringToFile(new File(inputDir, name), name, "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds ZIP and TAR archives in memory, the format is picked by the extension of the file written to.
+ */
+public class ArchiveFixture {
+    private final Map<String, byte[]> entries = new LinkedHashMap<>();
+
+    public ArchiveFixture entry(String name, byte[] content) {
+        entries.put(name, content);
+        return this;
+    }
+
+    public ArchiveFixture entry(String name, String content) {
+        return entry(name, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public File writeTo(File file) {
+        String name = file.getName();
+        try (OutputStream output = Files.newOutputStream(file.toPath())) {
+            if (name.endsWith(".zip")) {
+                writeZip(output);
+            } else if (name.endsWith(".gz") || name.endsWith(".tgz")) {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                    writeTar(gzip);
+                }
+            } else {
+                writeTar(output);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write fixture: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void writeZip(OutputStream output) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(output);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            zip.putNextEntry(new ZipEntry(entry.getKey()));
+            zip.write(entry.getValue());
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Names longer than fit in the header get a GNU long name entry in front of them.
+     */
+    private void writeTar(OutputStream output) throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        tar.write(header("dir/", 0, '5'));
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 100) {
+                tar.write(header("././@LongLink", name.length, 'L'));
+                writePadded(tar, name);
+            }
+            tar.write(header(entry.getKey(), entry.getValue().length, '0'));
+            writePadded(tar, entry.getValue());
+        }
+        tar.write(new byte[1024]);
+        output.write(tar.toByteArray());
+    }
+
+    private static byte[] header(String name, long size, char type) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 8, checksum);
+        return header;
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(digits.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    private static void writePadded(ByteArrayOutputStream tar, byte[] content) throws IOException {
+        tar.write(content);
+        tar.write(new byte[(512 - content.length % 512) % 512]);
+    }
+}
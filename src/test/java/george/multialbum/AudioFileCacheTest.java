@@ -0,0 +1,73 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioFileCacheTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void a_file_is_parsed_once() {
+        File file = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        AudioFileCache cache = new AudioFileCache(2);
+
+        AudioFile audioFile = cache.read(file);
+
+        assertSame(audioFile, cache.read(file));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void a_file_that_changed_is_parsed_again() {
+        File file = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        AudioFileCache cache = new AudioFileCache(2);
+        AudioFile audioFile = cache.read(file);
+
+        new Mp4Fixture().trackNumber(4).writeTo(file);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+
+        assertNotSame(audioFile, cache.read(file));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void the_file_used_longest_ago_is_evicted() {
+        File first = new Mp4Fixture().trackNumber(1).writeTo(temp.resolve("1-01 blah.m4a").toFile());
+        File second = new Mp4Fixture().trackNumber(2).writeTo(temp.resolve("1-02 blah.m4a").toFile());
+        File third = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        AudioFileCache cache = new AudioFileCache(2);
+        AudioFile firstAudioFile = cache.read(first);
+        AudioFile secondAudioFile = cache.read(second);
+
+        cache.read(first);
+        cache.read(third);
+
+        assertEquals(2, cache.size());
+        assertSame(firstAudioFile, cache.read(first));
+        assertNotSame(secondAudioFile, cache.read(second));
+    }
+
+    @Test
+    public void nothing_is_cached_without_room_for_a_file() {
+        File file = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        AudioFileCache cache = new AudioFileCache(0);
+
+        assertNotSame(cache.read(file), cache.read(file));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void not_an_audio_file() {
+        File file = temp.resolve("1-01 blah.m4a").toFile();
+
+        assertThrows(IllegalStateException.class, () -> new AudioFileCache().read(file));
+    }
+}
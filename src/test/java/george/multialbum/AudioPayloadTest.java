@@ -0,0 +1,74 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioPayloadTest {
+    @TempDir
+    Path temp;
+
+    private final AudioPayload audioPayload = new AudioPayload();
+    private final UpdateTrackNumberInMetaData updater = new UpdateTrackNumberInMetaData();
+
+    @Test
+    public void rewriting_the_tag_keeps_the_audio() {
+        File[] files = {
+                new Mp4Fixture().withoutTrackNumber().writeTo(temp.resolve("1-01 blah.m4a").toFile()),
+                new Mp3Fixture().trackNumber("3").padding(0).writeTo(temp.resolve("1-02 blah.mp3").toFile()),
+                new FlacFixture().trackNumber("3").padding(-1).writeTo(temp.resolve("1-03 blah.flac").toFile()),
+                new OggFixture().trackNumber("3").writeTo(temp.resolve("1-04 blah.ogg").toFile())
+        };
+
+        for (File file : files) {
+            long length = file.length();
+            String hash = audioPayload.hashOf(file);
+
+            updater.update(file, new TrackTags("123"));
+
+            assertNotEquals(length, file.length(), file.getName());
+            assertEquals(hash, audioPayload.hashOf(file), file.getName());
+        }
+    }
+
+    @Test
+    public void changed_audio() throws Exception {
+        File file = new Mp4Fixture().writeTo(temp.resolve("1-01 blah.m4a").toFile());
+        String hash = audioPayload.hashOf(file);
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(file.length() - 1);
+            int last = output.read();
+            output.seek(file.length() - 1);
+            output.write(last ^ 0xFF);
+        }
+
+        assertNotEquals(hash, audioPayload.hashOf(file));
+    }
+
+    @Test
+    public void copyAndHash() throws Exception {
+        File source = new FlacFixture().writeTo(temp.resolve("1-01 blah.flac").toFile());
+        File destination = temp.resolve("copy.flac").toFile();
+
+        String hash = audioPayload.copyAndHash(source, destination);
+
+        assertEquals(audioPayload.hashOf(source), hash);
+        assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(destination.toPath()));
+        assertEquals(source.lastModified(), destination.lastModified());
+    }
+
+    @Test
+    public void not_an_audio_file() throws Exception {
+        File file = temp.resolve("1-01 blah.m4a").toFile();
+        Files.write(file.toPath(), "not an audio file".getBytes("UTF-8"));
+
+        assertThrows(IllegalStateException.class, () -> audioPayload.hashOf(file));
+    }
+}
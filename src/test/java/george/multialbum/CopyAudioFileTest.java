@@ -0,0 +1,67 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CopyAudioFileTest {
+    @TempDir
+    Path temp;
+
+    private final CopyAudioFile copyAudioFile = new CopyAudioFile();
+    private File source;
+    private File destination;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = temp.resolve("1-01 source.m4a").toFile();
+        destination = temp.resolve("1-01 destination.m4a").toFile();
+        FileUtils.write(source, "audio", "UTF-8");
+    }
+
+    @Test
+    public void cloneAll_clones_into_the_directory_under_the_names_of_the_sources() throws IOException {
+        File other = temp.resolve("1-02 other.m4a").toFile();
+        FileUtils.write(other, "more audio", "UTF-8");
+        File dir = temp.resolve("clones").toFile();
+
+        Set<File> cloned = copyAudioFile.cloneAll(Arrays.asList(source, other), dir);
+
+        for (File clonedSource : cloned) {
+            File clone = new File(dir, clonedSource.getName());
+            assertEquals(FileUtils.readFileToString(clonedSource, "UTF-8"), FileUtils.readFileToString(clone, "UTF-8"));
+            assertFalse(copyAudioFile.isHardLinked(clone, clonedSource));
+        }
+    }
+
+    @Test
+    public void destinationOf_a_part_file() {
+        assertEquals(destination, CopyAudioFile.destinationOf(copyAudioFile.partFileOf(destination)));
+        assertEquals(destination, CopyAudioFile.destinationOf(destination));
+    }
+
+    @Test
+    public void linkOrCopy() throws IOException {
+        assumeTrue(copyAudioFile.linkOrCopy(source, destination));
+
+        assertEquals("audio", FileUtils.readFileToString(destination, "UTF-8"));
+        assertTrue(copyAudioFile.isHardLinked(destination, source));
+    }
+
+    @Test
+    public void a_copy_is_not_hard_linked() throws IOException {
+        copyAudioFile.copy(source, destination);
+
+        assertFalse(copyAudioFile.isHardLinked(destination, source));
+    }
+}
@@ -0,0 +1,52 @@
+package george.multialbum;
+
+import george.multialbum.DiskTrackNameParser.Rejection;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskTrackNameParserTest {
+    private final DiskTrackNameParser parser = new DiskTrackNameParser(Collections.singletonList("m4a"));
+
+    @Test
+    public void disk_track() {
+        DiskTrackNameParser.Result result = parser.parse("02-011 some title.m4a");
+
+        assertTrue(result.isDiskTrack());
+        assertNull(result.getRejection());
+        assertEquals(2, result.getDisk());
+        assertEquals(11, result.getTrack());
+    }
+
+    @Test
+    public void title_may_contain_anything() {
+        DiskTrackNameParser.Result result = parser.parse("1-2 3-4 a.b.m4a");
+
+        assertEquals(1, result.getDisk());
+        assertEquals(2, result.getTrack());
+    }
+
+    @Test
+    public void rejections() {
+        assertEquals(Rejection.NOT_AN_AUDIO_FILE, parser.parse("1-01 title.txt").getRejection());
+        assertEquals(Rejection.NOT_AN_AUDIO_FILE, parser.parse("1-01 title.M4A").getRejection());
+        assertEquals(Rejection.NOT_AN_AUDIO_FILE, parser.parse("1-01 titlem4a").getRejection());
+        assertEquals(Rejection.NO_DISK_NUMBER, parser.parse("should-not-be-copied.m4a").getRejection());
+        assertEquals(Rejection.NO_TRACK_NUMBER, parser.parse("1 title.m4a").getRejection());
+        assertEquals(Rejection.NO_TRACK_NUMBER, parser.parse("1- title.m4a").getRejection());
+        assertEquals(Rejection.NO_TITLE, parser.parse("1-01.m4a").getRejection());
+        assertEquals(Rejection.NO_TITLE, parser.parse("1-01 .m4a").getRejection());
+        assertEquals(Rejection.NO_TITLE, parser.parse("1-01_title.m4a").getRejection());
+        assertEquals(Rejection.NUMBER_TOO_LARGE, parser.parse("1-99999999999 title.m4a").getRejection());
+    }
+
+    @Test
+    public void any_extension() {
+        DiskTrackNameParser anyExtension = new DiskTrackNameParser(Collections.emptyList());
+
+        assertTrue(anyExtension.parse("1-01 title.flac").isDiskTrack());
+        assertTrue(anyExtension.parse("1-01 title").isDiskTrack());
+    }
+}
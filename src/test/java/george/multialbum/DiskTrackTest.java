@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class DiskTrackTest {
     @Test
@@ -38,4 +39,9 @@ class DiskTrackTest {
         assertEquals(1, track.getDisk());
         assertEquals(1, track.getTrack());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void not_a_disk_track() {
+        assertThrows(IllegalArgumentException.class, () -> new DiskTrack(new File("blah.m4a")));
+    }
+}
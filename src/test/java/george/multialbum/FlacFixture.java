@@ -0,0 +1,107 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Builds a FLAC file out of a STREAMINFO, a VORBIS_COMMENT and a PADDING block followed by random bytes standing in
+ * for the audio frames, so tests don't need real audio.
+ */
+public class FlacFixture {
+    private static final int STREAMINFO = 0;
+    private static final int PADDING = 1;
+    private static final int VORBIS_COMMENT = 4;
+
+    private String trackNumber = "1";
+    private String title = "fixture";
+    private int padding = 256;
+    private int audioBytes = 4096;
+
+    public FlacFixture trackNumber(String trackNumber) {
+        this.trackNumber = trackNumber;
+        return this;
+    }
+
+    public FlacFixture title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    /**
+     * @param padding the size of the padding block, or -1 for none
+     */
+    public FlacFixture padding(int padding) {
+        this.padding = padding;
+        return this;
+    }
+
+    public File writeTo(File file) {
+        try {
+            Files.write(file.toPath(), toBytes());
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write fixture: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public byte[] toBytes() {
+        long sampleRate = 44100;
+        long channels = 2;
+        long bitsPerSample = 16;
+        long totalSamples = sampleRate;
+        ByteBuffer streamInfo = ByteBuffer.allocate(34)
+                .putShort((short) 4096)
+                .putShort((short) 4096)
+                .put(new byte[6])
+                .putLong(sampleRate << 44 | (channels - 1) << 41 | (bitsPerSample - 1) << 36 | totalSamples)
+                .put(new byte[16]);
+
+        ByteArrayOutputStream comment = new ByteArrayOutputStream();
+        byte[] vendor = "george fixture".getBytes(StandardCharsets.UTF_8);
+        write(comment, int32LittleEndian(vendor.length));
+        write(comment, vendor);
+        write(comment, int32LittleEndian(2));
+        for (String value : new String[]{"TITLE=" + title, VorbisComment.TRACK_NUMBER + "=" + trackNumber}) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            write(comment, int32LittleEndian(bytes.length));
+            write(comment, bytes);
+        }
+
+        byte[] audio = new byte[audioBytes];
+        new Random(audioBytes).nextBytes(audio);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(output, "fLaC".getBytes(StandardCharsets.ISO_8859_1));
+        write(output, block(STREAMINFO, false, streamInfo.array()));
+        write(output, block(VORBIS_COMMENT, padding < 0, comment.toByteArray()));
+        if (padding >= 0) {
+            write(output, block(PADDING, true, new byte[padding]));
+        }
+        write(output, audio);
+        return output.toByteArray();
+    }
+
+    private static byte[] block(int type, boolean last, byte[] payload) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write((last ? 0x80 : 0) | type);
+        output.write(payload.length >>> 16);
+        output.write(payload.length >>> 8);
+        output.write(payload.length);
+        write(output, payload);
+        return output.toByteArray();
+    }
+
+    private static byte[] int32LittleEndian(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] bytes) {
+        output.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,92 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    @Test
+    public void percentiles_are_within_the_bucket_width() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMean(), 0.001);
+        assertEquals(1_000_000, histogram.getMax());
+        assertWithin(500_000, histogram.getValueAtPercentile(50));
+        assertWithin(990_000, histogram.getValueAtPercentile(99));
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void small_values_are_exact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+
+        assertEquals(3, histogram.getValueAtPercentile(50));
+        assertEquals(7, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void nothing_recorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    public void merge_buckets_that_were_written_out() {
+        LatencyHistogram written = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            written.record(i * 1000L);
+        }
+        long[] bucketCounts = new long[written.getBucketCount()];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = written.getCountAt(i);
+        }
+
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.record(1);
+        merged.merge(bucketCounts, written.getTotal(), written.getMax());
+
+        assertEquals(101, merged.getCount());
+        assertEquals(written.getTotal() + 1, merged.getTotal());
+        assertEquals(100_000, merged.getMax());
+        assertEquals(written.getValueAtPercentile(90), merged.getValueAtPercentile(90));
+    }
+
+    @Test
+    public void merge_adds_up_the_buckets() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(1_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(1_000_000);
+        }
+
+        fast.merge(slow);
+
+        assertEquals(100, fast.getCount());
+        assertEquals(1_000_000, fast.getMax());
+        assertWithin(1_000, fast.getValueAtPercentile(90));
+        assertWithin(1_000_000, fast.getValueAtPercentile(91));
+    }
+
+    @Test
+    public void every_bucket_starts_right_after_the_previous_one() {
+        for (int i = 1; i < new LatencyHistogram().getBucketCount() - 16; i++) {
+            assertEquals(LatencyHistogram.highestValueOf(i - 1) + 1, LatencyHistogram.lowestValueOf(i));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.lowestValueOf(i)));
+        }
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,92 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListDiskTracksTest {
+    @TempDir
+    Path temp;
+
+    private final ListDiskTracks listDiskTracks = new ListDiskTracks(new DiskTrackNameParser(UpdateTrackNumberInMetaData.AUDIO_FILE_EXTENSIONS));
+
+    @Test
+    public void stream_lists_the_disk_tracks_and_skips_the_rest() throws Exception {
+        File dir = temp.toFile();
+        write(new File(dir, "1-01 first.m4a"));
+        write(new File(dir, "2-01 second.mp3"));
+        write(new File(dir, "cover.jpg"));
+        new File(dir, "1-02 not a track.m4a").mkdirs();
+
+        List<File> skipped = new ArrayList<>();
+        List<File> tracks = new ArrayList<>();
+        listDiskTracks.stream(dir, (file, rejection) -> skipped.add(file))
+                .map(DiskTrack::getFile)
+                .doOnNext(tracks::add)
+                .blockLast();
+
+        Collections.sort(tracks);
+        assertEquals(2, tracks.size());
+        assertEquals(new File(dir, "1-01 first.m4a").getAbsoluteFile(), tracks.get(0).getAbsoluteFile());
+        assertEquals(new File(dir, "2-01 second.mp3").getAbsoluteFile(), tracks.get(1).getAbsoluteFile());
+        assertEquals(1, skipped.size());
+        assertEquals("cover.jpg", skipped.get(0).getName());
+    }
+
+    @Test
+    public void stream_stops_reading_when_cancelled() throws Exception {
+        File dir = temp.toFile();
+        for (int i = 1; i <= 20; i++) {
+            write(new File(dir, "1-" + i + " track.m4a"));
+        }
+
+        assertEquals(2, listDiskTracks.stream(dir, (file, rejection) -> fail("nothing to skip")).take(2).collectList().block().size());
+    }
+
+    @Test
+    public void stream_fails_when_the_directory_can_not_be_read() {
+        File dir = new File(temp.toFile(), "missing");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> listDiskTracks.stream(dir, (file, rejection) -> fail("nothing to skip")).blockLast());
+        assertTrue(e.getMessage().contains(dir.getAbsolutePath()));
+    }
+
+    @Test
+    public void list_the_disk_tracks_of_an_archive_by_their_entry_names() throws Exception {
+        File file = new ArchiveFixture()
+                .entry("album/2-01 second.m4a", "second")
+                .entry("album/cover.jpg", "cover")
+                .entry("album/1-01 first.m4a", "first")
+                .entry("other/1-01 first.m4a", "the same name")
+                .writeTo(temp.resolve("album.zip").toFile());
+
+        List<File> skipped = new ArrayList<>();
+        List<DiskTrack> tracks;
+        try (AlbumArchive archive = AlbumArchive.open(file)) {
+            tracks = listDiskTracks.list(archive, (entry, rejection) -> skipped.add(entry));
+        }
+
+        assertEquals(2, tracks.size());
+        assertEquals("album/2-01 second.m4a", tracks.get(0).getEntryName());
+        assertEquals("album/1-01 first.m4a", tracks.get(1).getEntryName());
+        assertEquals(file, tracks.get(1).getArchive());
+        assertEquals("1-01 first.m4a", tracks.get(1).getFile().getName());
+        assertEquals(1, tracks.get(1).getDisk());
+        assertEquals(1, tracks.get(1).getTrack());
+        assertEquals(Collections.singletonList("cover.jpg"), skipped.stream().map(File::getName).collect(Collectors.toList()));
+    }
+
+    private void write(File file) throws Exception {
+        Files.write(file.toPath(), new byte[]{1});
+    }
+}
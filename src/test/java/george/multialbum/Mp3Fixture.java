@@ -0,0 +1,116 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Builds an MP3 file out of an ID3v2 tag and a run of silent MPEG-1 layer III frames, so tests don't need real audio.
+ */
+public class Mp3Fixture {
+    private static final byte[] FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x64};
+    private static final int FRAME_SIZE = 417;
+
+    private int version = 3;
+    private String trackNumber = "1";
+    private String title = "fixture";
+    private int padding = 256;
+    private int frames = 20;
+    private boolean withId3v1 = false;
+
+    public Mp3Fixture version(int version) {
+        this.version = version;
+        return this;
+    }
+
+    public Mp3Fixture trackNumber(String trackNumber) {
+        this.trackNumber = trackNumber;
+        return this;
+    }
+
+    public Mp3Fixture withoutTrackNumber() {
+        this.trackNumber = null;
+        return this;
+    }
+
+    public Mp3Fixture title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public Mp3Fixture padding(int padding) {
+        this.padding = padding;
+        return this;
+    }
+
+    public Mp3Fixture withId3v1() {
+        this.withId3v1 = true;
+        return this;
+    }
+
+    public File writeTo(File file) {
+        try {
+            Files.write(file.toPath(), toBytes());
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write fixture: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] tagFrames = trackNumber == null ? textFrame("TIT2", title) : concat(textFrame("TIT2", title), textFrame("TRCK", trackNumber));
+        int tagSize = tagFrames.length + padding;
+        write(output, new byte[]{'I', 'D', '3', (byte) version, 0, 0});
+        write(output, int32(syncSafe(tagSize)));
+        write(output, tagFrames);
+        write(output, new byte[padding]);
+
+        for (int i = 0; i < frames; i++) {
+            write(output, FRAME_HEADER);
+            write(output, new byte[FRAME_SIZE - FRAME_HEADER.length]);
+        }
+
+        if (withId3v1) {
+            byte[] id3v1 = new byte[128];
+            id3v1[0] = 'T';
+            id3v1[1] = 'A';
+            id3v1[2] = 'G';
+            byte[] titleBytes = title.getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(titleBytes, 0, id3v1, 3, Math.min(30, titleBytes.length));
+            id3v1[126] = (byte) (trackNumber == null ? 0 : Integer.parseInt(trackNumber.split("/")[0]));
+            id3v1[127] = (byte) 0xFF;
+            write(output, id3v1);
+        }
+        return output.toByteArray();
+    }
+
+    private byte[] textFrame(String id, String text) {
+        byte[] value = concat(new byte[1], text.getBytes(StandardCharsets.ISO_8859_1));
+        return concat(id.getBytes(StandardCharsets.ISO_8859_1),
+                int32(version == 3 ? value.length : syncSafe(value.length)), new byte[2], value);
+    }
+
+    private static int syncSafe(int value) {
+        return (value & 0xFE00000) << 3 | (value & 0x1FC000) << 2 | (value & 0x3F80) << 1 | value & 0x7F;
+    }
+
+    private static byte[] int32(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] bytes) {
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            write(output, part);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,161 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Builds the smallest M4A (AAC in MP4) file that jaudiotagger is willing to read, so tests don't need real audio.
+ */
+public class Mp4Fixture {
+    private static final int TIMESCALE = 44100;
+
+    private boolean withTrackNumber = true;
+    private int trackNumber = 1;
+    private int trackTotal = 0;
+    private int discNumber = -1;
+    private int discTotal = 0;
+    private String title = "fixture";
+    private int audioBytes = 4096;
+
+    public Mp4Fixture trackNumber(int trackNumber) {
+        this.trackNumber = trackNumber;
+        return this;
+    }
+
+    public Mp4Fixture withoutTrackNumber() {
+        this.withTrackNumber = false;
+        return this;
+    }
+
+    public Mp4Fixture trackTotal(int trackTotal) {
+        this.trackTotal = trackTotal;
+        return this;
+    }
+
+    /**
+     * Adds a disk atom, which is left out by default.
+     */
+    public Mp4Fixture disc(int discNumber, int discTotal) {
+        this.discNumber = discNumber;
+        this.discTotal = discTotal;
+        return this;
+    }
+
+    public Mp4Fixture title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public Mp4Fixture audioBytes(int audioBytes) {
+        this.audioBytes = audioBytes;
+        return this;
+    }
+
+    public File writeTo(File file) {
+        try {
+            Files.write(file.toPath(), toBytes());
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write fixture: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public byte[] toBytes() {
+        byte[] ftyp = atom("ftyp", concat(ascii("M4A "), int32(0), ascii("M4A "), ascii("mp42"), ascii("isom")));
+        byte[] mdatPayload = new byte[audioBytes];
+        new Random(audioBytes).nextBytes(mdatPayload);
+
+        // the chunk offset has to point into mdat, which comes after moov
+        byte[] moovWithoutOffset = moov(0);
+        int chunkOffset = ftyp.length + moovWithoutOffset.length + 8;
+
+        return concat(ftyp, moov(chunkOffset), atom("mdat", mdatPayload));
+    }
+
+    private byte[] moov(int chunkOffset) {
+        int duration = TIMESCALE;
+        byte[] mvhd = fullAtom("mvhd", concat(int32(0), int32(0), int32(TIMESCALE), int32(duration),
+                int32(0x00010000), int16(0x0100), new byte[10], matrix(), new byte[24], int32(2)));
+        byte[] tkhd = fullAtom("tkhd", 7, concat(int32(0), int32(0), int32(1), int32(0), int32(duration),
+                new byte[8], int16(0), int16(0), int16(0x0100), int16(0), matrix(), int32(0), int32(0)));
+        byte[] mdhd = fullAtom("mdhd", concat(int32(0), int32(0), int32(TIMESCALE), int32(duration), int16(0x55c4), int16(0)));
+        byte[] hdlr = fullAtom("hdlr", concat(int32(0), ascii("soun"), new byte[12], ascii("SoundHandler"), new byte[1]));
+        byte[] smhd = fullAtom("smhd", concat(int16(0), int16(0)));
+        byte[] dinf = atom("dinf", fullAtom("dref", concat(int32(1), fullAtom("url ", 1, new byte[0]))));
+
+        byte[] esds = fullAtom("esds", concat(
+                new byte[]{0x03, 0x19}, int16(1), new byte[]{0x00},
+                new byte[]{0x04, 0x11, 0x40, 0x15}, new byte[]{0x00, 0x00, 0x00}, int32(128000), int32(128000),
+                new byte[]{0x05, 0x02, 0x12, 0x10},
+                new byte[]{0x06, 0x01, 0x02}));
+        byte[] mp4a = atom("mp4a", concat(new byte[6], int16(1), new byte[8], int16(2), int16(16), int16(0), int16(0),
+                int32(TIMESCALE << 16), esds));
+        byte[] stsd = fullAtom("stsd", concat(int32(1), mp4a));
+        byte[] stts = fullAtom("stts", concat(int32(1), int32(1), int32(duration)));
+        byte[] stsc = fullAtom("stsc", concat(int32(1), int32(1), int32(1), int32(1)));
+        byte[] stsz = fullAtom("stsz", concat(int32(audioBytes), int32(1)));
+        byte[] stco = fullAtom("stco", concat(int32(1), int32(chunkOffset)));
+        byte[] stbl = atom("stbl", concat(stsd, stts, stsc, stsz, stco));
+
+        byte[] minf = atom("minf", concat(smhd, dinf, stbl));
+        byte[] mdia = atom("mdia", concat(mdhd, hdlr, minf));
+        byte[] trak = atom("trak", concat(tkhd, mdia));
+
+        byte[] trkn = atom("trkn", data(0, concat(int16(0), int16(trackNumber), int16(trackTotal), int16(0))));
+        byte[] disk = discNumber < 0 ? new byte[0] : atom("disk", data(0, concat(int16(0), int16(discNumber), int16(discTotal))));
+        byte[] nam = atom("©nam", data(1, title.getBytes(StandardCharsets.UTF_8)));
+        byte[] ilst = atom("ilst", withTrackNumber ? concat(nam, trkn, disk) : concat(nam, disk));
+        byte[] metaHdlr = fullAtom("hdlr", concat(int32(0), ascii("mdir"), ascii("appl"), new byte[8], new byte[1]));
+        byte[] meta = fullAtom("meta", concat(metaHdlr, ilst));
+        byte[] udta = atom("udta", meta);
+
+        return atom("moov", concat(mvhd, trak, udta));
+    }
+
+    private static byte[] data(int type, byte[] value) {
+        return atom("data", concat(int32(type), int32(0), value));
+    }
+
+    private static byte[] matrix() {
+        return concat(int32(0x00010000), int32(0), int32(0),
+                int32(0), int32(0x00010000), int32(0),
+                int32(0), int32(0), int32(0x40000000));
+    }
+
+    private static byte[] fullAtom(String type, byte[] payload) {
+        return fullAtom(type, 0, payload);
+    }
+
+    private static byte[] fullAtom(String type, int flags, byte[] payload) {
+        return atom(type, concat(int32(flags), payload));
+    }
+
+    private static byte[] atom(String type, byte[] payload) {
+        return concat(int32(payload.length + 8), type.getBytes(StandardCharsets.ISO_8859_1), payload);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] int32(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static byte[] int16(int value) {
+        return ByteBuffer.allocate(2).putShort((short) value).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.write(part, 0, part.length);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,179 @@
+package george.multialbum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds an Ogg Vorbis file out of the three Vorbis header packets and a page of random bytes standing in for the
+ * audio, so tests don't need real audio. Limiting the segments per page splits the comment header over several pages.
+ */
+public class OggFixture {
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < CRC_TABLE.length; i++) {
+            int remainder = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                remainder = (remainder & 0x80000000) != 0 ? (remainder << 1) ^ 0x04C11DB7 : remainder << 1;
+            }
+            CRC_TABLE[i] = remainder;
+        }
+    }
+
+    private String trackNumber = "1";
+    private String title = "fixture";
+    private int segmentsPerPage = 255;
+    private int audioBytes = 4096;
+
+    public OggFixture trackNumber(String trackNumber) {
+        this.trackNumber = trackNumber;
+        return this;
+    }
+
+    public OggFixture title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public OggFixture segmentsPerPage(int segmentsPerPage) {
+        this.segmentsPerPage = segmentsPerPage;
+        return this;
+    }
+
+    public File writeTo(File file) {
+        try {
+            Files.write(file.toPath(), toBytes());
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write fixture: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer identification = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 1).put("vorbis".getBytes(StandardCharsets.ISO_8859_1))
+                .putInt(0)
+                .put((byte) 2)
+                .putInt(44100)
+                .putInt(0).putInt(128000).putInt(0)
+                .put((byte) 0xB8)
+                .put((byte) 1);
+
+        ByteArrayOutputStream comment = new ByteArrayOutputStream();
+        write(comment, new byte[]{3, 'v', 'o', 'r', 'b', 'i', 's'});
+        byte[] vendor = "george fixture".getBytes(StandardCharsets.UTF_8);
+        write(comment, int32(vendor.length));
+        write(comment, vendor);
+        write(comment, int32(2));
+        for (String value : new String[]{"TITLE=" + title, VorbisComment.TRACK_NUMBER + "=" + trackNumber}) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            write(comment, int32(bytes.length));
+            write(comment, bytes);
+        }
+        comment.write(1);
+
+        byte[] setup = new byte[]{5, 'v', 'o', 'r', 'b', 'i', 's', 0};
+        byte[] audio = new byte[audioBytes];
+        new Random(audioBytes).nextBytes(audio);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int[] sequence = {0};
+        writePages(output, sequence, 0x02, 0, identification.array());
+        writePages(output, sequence, 0, 0, comment.toByteArray(), setup);
+        writePages(output, sequence, 0x04, 44100, audio);
+        return output.toByteArray();
+    }
+
+    /**
+     * @return true when the checksum of every page matches its contents
+     */
+    public static boolean checksumsAreValid(File file) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        int position = 0;
+        while (position < bytes.capacity()) {
+            int segmentCount = bytes.get(position + 26) & 0xFF;
+            int length = 27 + segmentCount;
+            for (int i = 0; i < segmentCount; i++) {
+                length += bytes.get(position + 27 + i) & 0xFF;
+            }
+            byte[] page = new byte[length];
+            System.arraycopy(bytes.array(), position, page, 0, length);
+            int expected = bytes.getInt(position + 22);
+            ByteBuffer.wrap(page).putInt(22, 0);
+            if (crc(page) != expected) {
+                return false;
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    private void writePages(ByteArrayOutputStream output, int[] sequence, int flags, long granule, byte[]... packets) {
+        List<Integer> segments = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] packet : packets) {
+            for (int remaining = packet.length; ; remaining -= 255) {
+                segments.add(Math.min(remaining, 255));
+                if (remaining < 255) {
+                    break;
+                }
+            }
+            write(body, packet);
+        }
+
+        byte[] bodyBytes = body.toByteArray();
+        int offset = 0;
+        boolean continued = false;
+        for (int first = 0; first < segments.size(); first += segmentsPerPage) {
+            List<Integer> pageSegments = segments.subList(first, Math.min(segments.size(), first + segmentsPerPage));
+            boolean lastPage = first + segmentsPerPage >= segments.size();
+            int length = 0;
+            for (int segment : pageSegments) {
+                length += segment;
+            }
+
+            ByteBuffer page = ByteBuffer.allocate(27 + pageSegments.size() + length).order(ByteOrder.LITTLE_ENDIAN);
+            page.put("OggS".getBytes(StandardCharsets.ISO_8859_1))
+                    .put((byte) 0)
+                    .put((byte) ((continued ? 0x01 : 0) | (lastPage ? flags : flags & 0x02)))
+                    .putLong(lastPage ? granule : -1)
+                    .putInt(0x6765)
+                    .putInt(sequence[0]++)
+                    .putInt(0)
+                    .put((byte) pageSegments.size());
+            for (int segment : pageSegments) {
+                page.put((byte) segment);
+            }
+            page.put(bodyBytes, offset, length);
+            page.putInt(22, crc(page.array()));
+            write(output, page.array());
+
+            offset += length;
+            continued = pageSegments.get(pageSegments.size() - 1) == 255;
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        int crc = 0;
+        for (byte b : bytes) {
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) & 0xFF) ^ (b & 0xFF)];
+        }
+        return crc;
+    }
+
+    private static byte[] int32(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static void write(ByteArrayOutputStream output, byte[] bytes) {
+        output.write(bytes, 0, bytes.length);
+    }
+}
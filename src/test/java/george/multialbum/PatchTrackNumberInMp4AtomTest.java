@@ -0,0 +1,97 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatchTrackNumberInMp4AtomTest {
+    @TempDir
+    Path temp;
+
+    private final PatchTrackNumberInMp4Atom patcher = new PatchTrackNumberInMp4Atom();
+
+    @Test
+    public void only_the_track_number_changes() throws Exception {
+        File file = new Mp4Fixture().trackNumber(3).trackTotal(9).title("title").writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertTrue(patcher.patch(file, 12));
+
+        byte[] patched = Files.readAllBytes(file.toPath());
+        assertEquals(original.length, patched.length);
+        assertEquals(1, countDifferentBytes(original, patched));
+
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("9", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void track_total_and_disc_change_in_place() throws Exception {
+        File file = new Mp4Fixture().trackNumber(3).trackTotal(9).disc(2, 2).writeTo(temp.resolve("2-03 blah.m4a").toFile());
+        long length = file.length();
+
+        assertTrue(patcher.patch(file, new TrackTags("012").setTrackTotal("020").setDisc("1", "1")));
+
+        assertEquals(length, file.length());
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("20", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_NO));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_TOTAL));
+    }
+
+    @Test
+    public void no_disc_atom_to_patch() throws Exception {
+        File file = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertFalse(patcher.patch(file, new TrackTags("12").setDisc("1", "1")));
+
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void no_track_number_atom() throws Exception {
+        File file = new Mp4Fixture().withoutTrackNumber().writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertFalse(patcher.patch(file, 12));
+
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void not_an_mp4_file() throws Exception {
+        File file = temp.resolve("1-03 blah.m4a").toFile();
+        Files.write(file.toPath(), "not an mp4 file".getBytes("UTF-8"));
+
+        assertFalse(patcher.patch(file, 12));
+    }
+
+    @Test
+    public void track_number_too_large_for_the_atom() throws Exception {
+        File file = new Mp4Fixture().writeTo(temp.resolve("1-03 blah.m4a").toFile());
+
+        assertFalse(patcher.patch(file, 70000));
+    }
+
+    private int countDifferentBytes(byte[] expected, byte[] actual) {
+        int count = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,94 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanRenumberingTest {
+    @TempDir
+    Path temp;
+
+    private final PlanRenumbering planRenumbering = new PlanRenumbering(
+            new ListDiskTracks(new DiskTrackNameParser(UpdateTrackNumberInMetaData.AUDIO_FILE_EXTENSIONS)));
+
+    @Test
+    public void plan() throws Exception {
+        File inputDir = temp.resolve("input").toFile();
+        File outputDir = temp.resolve("output").toFile();
+        inputDir.mkdirs();
+        write(new File(inputDir, "2-001 third.m4a"), 10);
+        write(new File(inputDir, "1-002 second.mp3"), 20);
+        write(new File(inputDir, "1-001 first.flac"), 30);
+        write(new File(inputDir, "notes.txt"), 5);
+        write(new File(inputDir, "bonus.m4a"), 5);
+        new File(inputDir, "1-003 not a track.m4a").mkdirs();
+
+        List<PlanRenumbering.AlbumPlan> albums = new ArrayList<>();
+        PlanRenumbering.Plan plan = planRenumbering.plan(Collections.singletonList(new Album(inputDir, outputDir)), albums::add);
+
+        assertEquals(1, albums.size());
+        PlanRenumbering.AlbumPlan album = albums.get(0);
+        List<String> mapping = album.getTracks().stream()
+                .map((track) -> track.getTrackNumber() + " " + track.getOutputFile().getName())
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("001 1-001 first.flac", "002 1-002 second.mp3", "003 2-001 third.m4a"), mapping);
+        assertEquals(outputDir, album.getTracks().get(0).getOutputFile().getParentFile());
+
+        assertEquals(DiskTrackNameParser.Rejection.NOT_AN_AUDIO_FILE.getDescription(), album.getSkipped().get(new File(inputDir, "notes.txt")));
+        assertEquals(DiskTrackNameParser.Rejection.NO_DISK_NUMBER.getDescription(), album.getSkipped().get(new File(inputDir, "bonus.m4a")));
+        assertEquals(2, album.getSkipped().size());
+        assertEquals(60, album.getTotalBytes());
+
+        assertEquals(1, plan.getAlbumCount());
+        assertEquals(3, plan.getTrackCount());
+        assertEquals(60, plan.getTotalBytes());
+        assertTrue(plan.getBytesPerSecond() > 0);
+        assertNotNull(plan.getEstimatedRuntime());
+        assertFalse(outputDir.exists());
+    }
+
+    @Test
+    public void plan_an_archive() {
+        File archive = new ArchiveFixture()
+                .entry("album/1-001 first.flac", new byte[30])
+                .entry("album/1-002 second.mp3", new byte[20])
+                .entry("album/cover.jpg", new byte[5])
+                .writeTo(temp.resolve("album.tar.gz").toFile());
+
+        PlanRenumbering.Plan plan = planRenumbering.plan(Collections.singletonList(new Album(archive, temp.resolve("output").toFile())),
+                (album) -> {
+                });
+
+        assertEquals(2, plan.getTrackCount());
+        assertEquals(50, plan.getTotalBytes());
+        assertTrue(plan.getBytesPerSecond() > 0);
+        assertNotNull(plan.getEstimatedRuntime());
+    }
+
+    @Test
+    public void nothing_to_do() {
+        File inputDir = temp.toFile();
+
+        PlanRenumbering.Plan plan = planRenumbering.plan(Collections.singletonList(new Album(inputDir, new File(inputDir, "output"))),
+                (album) -> {
+                });
+
+        assertEquals(0, plan.getTrackCount());
+        assertEquals(0, plan.getTotalBytes());
+        assertNull(plan.getEstimatedRuntime());
+    }
+
+    private void write(File file, int size) throws Exception {
+        Files.write(file.toPath(), new byte[size]);
+    }
+}
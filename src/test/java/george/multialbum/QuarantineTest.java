@@ -0,0 +1,45 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuarantineTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void io_errors_are_transient() {
+        assertTrue(Quarantine.isTransient(new IOException("Connection reset")));
+        assertTrue(Quarantine.isTransient(new IllegalStateException("Failed copying", new IOException("Connection reset"))));
+    }
+
+    @Test
+    public void missing_files_and_other_errors_are_not_transient() {
+        assertFalse(Quarantine.isTransient(new NoSuchFileException("01-01 track.m4a")));
+        assertFalse(Quarantine.isTransient(new IllegalStateException("Failed copying", new FileNotFoundException("01-01 track.m4a"))));
+        assertFalse(Quarantine.isTransient(new IllegalStateException("broken tag")));
+    }
+
+    @Test
+    public void writes_a_line_with_the_reason_for_every_file() throws IOException {
+        File file = new File(tempDir.toFile(), "01-02 track.m4a");
+        File quarantineFile = new File(tempDir.toFile(), Quarantine.FILE_NAME);
+        Quarantine quarantine = new Quarantine();
+
+        quarantine.add(file, new IllegalStateException("Failed updating track number", new IOException("Disk\nfull")));
+        quarantine.writeTo(quarantineFile);
+
+        assertFalse(quarantine.isEmpty());
+        assertEquals(file.getAbsolutePath() + "\tFailed updating track number: Disk full\n",
+                FileUtils.readFileToString(quarantineFile, "UTF-8"));
+    }
+}
@@ -1,6 +1,9 @@
 package george.multialbum;
 
 import cli.pi.command.ArgsParsingException;
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -15,11 +18,20 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.*;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,7 +43,7 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
     @InjectMocks
     private RenumberTrackMetadataForMultipleDiskAlbumCommand cmd;
     @Mock
-    private UpdateTrackNumberInMetaData updater;
+    private TagWriter updater;
 
     private File rootDir;
     private File outputDir;
@@ -58,10 +70,552 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
 
 
         for (int i = 0; i < outputFiles.size(); i++) {
-            verify(updater).update(outputFiles.get(i), StringUtils.leftPad(String.valueOf(i + 1), 3, "0"));
+            verify(updater).update(outputFiles.get(i), new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
         }
     }
 
+    @Test
+    public void track_numbers_follow_the_disk_order_when_updating_in_parallel() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 3, 12, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--tag-concurrency", "4");
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File outputFile = new File(outputDir, inputFiles.get(i).getName());
+            verify(updater).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+    }
+
+    @Test
+    public void rewrite_mode_writes_each_file_once_with_its_new_track_number() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 3, AUDIO_FILE_EXTENSION);
+        doAnswer((invocation) -> {
+            FileUtils.copyFile(invocation.<File>getArgument(0), invocation.<File>getArgument(1));
+            return null;
+        }).when(updater).copyWithTags(any(), any(), any());
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--copy-mode", "rewrite");
+
+        assertFilesCopied(inputFiles, outputDir);
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File inputFile = inputFiles.get(i);
+            File partFile = new CopyAudioFile().partFileOf(new File(outputDir, inputFile.getName()));
+            verify(updater).copyWithTags(inputFile, partFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+        verify(updater, never()).update(any(), any());
+    }
+
+    @Test
+    public void link_mode_tags_a_copy_that_replaces_the_link_when_the_track_number_changes() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--copy-mode", "link");
+
+        assertFilesCopied(inputFiles, outputDir);
+        CopyAudioFile copyAudioFile = new CopyAudioFile();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File outputFile = new File(outputDir, inputFiles.get(i).getName());
+            assertFalse(copyAudioFile.isHardLinked(outputFile, inputFiles.get(i)));
+            verify(updater).update(copyAudioFile.partFileOf(outputFile), new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+    }
+
+    @Test
+    public void clone_mode_writes_every_file_and_leaves_no_clones_behind() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 2, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--copy-mode", "clone");
+
+        assertFilesCopied(inputFiles, outputDir);
+        assertFalse(new File(outputDir, CopyAudioFile.CLONE_DIR_NAME).exists());
+        verify(updater, times(inputFiles.size())).update(any(), any());
+    }
+
+    @Test
+    public void rerun_skips_tracks_that_did_not_change() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 2, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File outputFile = new File(outputDir, inputFiles.get(i).getName());
+            verify(updater, times(1)).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+    }
+
+    @Test
+    public void rerun_renumbers_tracks_that_moved() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        File newFirstTrack = new File(inputDir, "1-000 new first track." + AUDIO_FILE_EXTENSION);
+        writeRandomValueToFile(newFirstTrack);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        verify(updater).update(new File(outputDir, newFirstTrack.getName()), new TrackTags("001"));
+        verify(updater).update(new File(outputDir, inputFiles.get(0).getName()), new TrackTags("002"));
+        verify(updater).update(new File(outputDir, inputFiles.get(1).getName()), new TrackTags("003"));
+    }
+
+    @Test
+    public void rerun_copies_tracks_whose_source_changed() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        File changedFile = inputFiles.get(1);
+        writeRandomValueToFile(changedFile);
+        changedFile.setLastModified(changedFile.lastModified() - 60000);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        assertFilesCopied(inputFiles, outputDir);
+        verify(updater, times(1)).update(new File(outputDir, inputFiles.get(0).getName()), new TrackTags("001"));
+        verify(updater, times(2)).update(new File(outputDir, changedFile.getName()), new TrackTags("002"));
+    }
+
+    @Test
+    public void rerun_with_hash_copies_tracks_whose_content_changed_without_changing_size_or_time() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 1, AUDIO_FILE_EXTENSION);
+        File changedFile = inputFiles.get(0);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--hash");
+
+        long lastModified = changedFile.lastModified();
+        writeRandomValueToFile(changedFile);
+        changedFile.setLastModified(lastModified);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--hash");
+
+        assertFilesCopied(inputFiles, outputDir);
+    }
+
+    @Test
+    public void write_totals_writes_the_total_and_album_fields_with_the_track_number() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 1, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--write-totals", "--album", "Album");
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File outputFile = new File(outputDir, inputFiles.get(i).getName());
+            verify(updater).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0"))
+                    .setTrackTotal("002").setDisc("1", "1").setAlbumField(TrackTags.AlbumField.ALBUM, "Album"));
+        }
+    }
+
+    @Test
+    public void rerun_tags_every_track_again_once_a_field_changed() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--album", "Album");
+
+        verify(updater).update(new File(outputDir, inputFiles.get(0).getName()), new TrackTags("001").setAlbumField(TrackTags.AlbumField.ALBUM, "Album"));
+        verify(updater).update(new File(outputDir, inputFiles.get(1).getName()), new TrackTags("002").setAlbumField(TrackTags.AlbumField.ALBUM, "Album"));
+    }
+
+    @Test
+    public void force_renumbers_every_track() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--force");
+
+        verify(updater, times(2)).update(new File(outputDir, inputFiles.get(0).getName()), new TrackTags("001"));
+        verify(updater, times(2)).update(new File(outputDir, inputFiles.get(1).getName()), new TrackTags("002"));
+    }
+
+    @Test
+    public void resume_finishes_a_run_that_died() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 3, AUDIO_FILE_EXTENSION);
+        File failingFile = new File(outputDir, inputFiles.get(2).getName());
+        AtomicBoolean fail = new AtomicBoolean(true);
+        lenient().doAnswer((invocation) -> {
+            if (fail.get()) {
+                throw new IllegalStateException("died");
+            }
+            return null;
+        }).when(updater).update(eq(failingFile), any());
+
+        assertThrows(IllegalStateException.class, () ->
+                cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--tag-concurrency", "1", "--fail-fast"));
+        assertFalse(new File(outputDir, TrackManifest.FILE_NAME).exists());
+
+        fail.set(false);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--resume");
+
+        assertFilesCopied(inputFiles, outputDir);
+        verify(updater, times(2)).update(failingFile, new TrackTags("003"));
+        assertTrue(new File(outputDir, TrackManifest.FILE_NAME).exists());
+        assertFalse(new File(outputDir, TrackManifest.JOURNAL_FILE_NAME).exists());
+        assertArrayEquals(new String[0], outputDir.list((dir, name) -> name.contains(CopyAudioFile.PART_FILE_SUFFIX)));
+    }
+
+    @Test
+    public void a_file_that_keeps_failing_is_quarantined_while_the_others_finish() throws IOException {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 3, AUDIO_FILE_EXTENSION);
+        File failingFile = new File(outputDir, inputFiles.get(1).getName());
+        AtomicBoolean fail = new AtomicBoolean(true);
+        lenient().doAnswer((invocation) -> {
+            if (fail.get()) {
+                throw new IllegalStateException("broken tag");
+            }
+            return null;
+        }).when(updater).update(eq(failingFile), any());
+
+        FilesQuarantinedException exception = assertThrows(FilesQuarantinedException.class, () ->
+                cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath()));
+
+        assertEquals("1 file(s) failed and were quarantined: [" + failingFile + "]", exception.getMessage());
+        verify(updater).update(new File(outputDir, inputFiles.get(0).getName()), new TrackTags("001"));
+        verify(updater).update(new File(outputDir, inputFiles.get(2).getName()), new TrackTags("003"));
+        verify(updater, times(1)).update(eq(failingFile), any());
+        assertTrue(new File(outputDir, TrackManifest.FILE_NAME).exists());
+        File quarantineFile = new File(outputDir, Quarantine.FILE_NAME);
+        assertTrue(FileUtils.readFileToString(quarantineFile, "UTF-8").startsWith(failingFile.getAbsolutePath() + "\tbroken tag"));
+
+        fail.set(false);
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        verify(updater, times(2)).update(failingFile, new TrackTags("002"));
+        assertFalse(quarantineFile.exists());
+    }
+
+    @Test
+    public void transient_io_errors_are_retried() throws IOException {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 2, AUDIO_FILE_EXTENSION);
+        File flakyFile = new File(outputDir, inputFiles.get(0).getName());
+        AtomicInteger failures = new AtomicInteger(2);
+        lenient().doAnswer((invocation) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("share went away", new IOException("Connection reset"));
+            }
+            return null;
+        }).when(updater).update(eq(flakyFile), any());
+        File reportFile = new File(rootDir, "report.json");
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--retry-backoff", "1",
+                "--report", reportFile.getAbsolutePath());
+
+        assertFilesCopied(inputFiles, outputDir);
+        verify(updater, times(3)).update(flakyFile, new TrackTags("001"));
+        JsonObject report = Json.parse(FileUtils.readFileToString(reportFile, "UTF-8")).asObject();
+        assertEquals(2, report.getLong("retries", 0));
+        assertEquals(0, report.getLong("files-quarantined", -1));
+    }
+
+    @Test
+    public void report_has_the_throughput_and_timings_of_every_stage() throws IOException {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 2, AUDIO_FILE_EXTENSION);
+        File reportFile = new File(rootDir, "report.json");
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--report", reportFile.getAbsolutePath());
+
+        JsonObject report = Json.parse(FileUtils.readFileToString(reportFile, "UTF-8")).asObject();
+        assertEquals(4, report.getLong("files-copied", 0));
+        assertEquals(4, report.getLong("files-numbered", 0));
+        assertEquals(inputFiles.stream().mapToLong(File::length).sum(), report.getLong("bytes-copied", 0));
+        assertTrue(report.getLong("first-copy-uptime-ms", -1) > 0);
+        assertEquals("copy", report.get("settings").asObject().getString("copy-mode", null));
+
+        JsonObject stages = report.get("stages").asObject();
+        assertEquals(1, stages.get("list").asObject().getLong("count", 0));
+        assertEquals(4, stages.get("copy").asObject().getLong("count", 0));
+        assertEquals(4, stages.get("tag").asObject().getLong("count", 0));
+        List<String> filesWithCopyTimings = report.get("files").asArray().values().stream()
+                .map(JsonValue::asObject)
+                .filter((file) -> file.get("copy-ms") != null)
+                .map((file) -> new File(file.getString("file", null)).getName())
+                .collect(Collectors.toList());
+        assertEquals(inputFiles.stream().map(File::getName).sorted().collect(Collectors.toList()), filesWithCopyTimings);
+        assertFalse(new File(outputDir, RunReport.FILE_NAME).exists());
+    }
+
+    @Test
+    public void verify_checks_the_audio_of_every_copy() throws IOException {
+        List<File> inputFiles = Arrays.asList(
+                new Mp4Fixture().trackNumber(1).writeTo(new File(inputDir, "1-001 first.m4a")),
+                new Mp4Fixture().trackNumber(1).writeTo(new File(inputDir, "2-001 second.m4a")));
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--verify");
+
+        assertFilesCopied(inputFiles, outputDir);
+        JsonObject report = Json.parse(FileUtils.readFileToString(new File(outputDir, RunReport.FILE_NAME), "UTF-8")).asObject();
+        assertEquals(2, report.getLong("files-verified", 0));
+    }
+
+    @Test
+    public void verify_fails_the_run_when_the_audio_of_a_copy_is_damaged() {
+        File inputFile = new Mp4Fixture().writeTo(new File(inputDir, "1-001 first.m4a"));
+        File outputFile = new File(outputDir, inputFile.getName());
+        doAnswer((invocation) -> {
+            try (RandomAccessFile file = new RandomAccessFile(invocation.<File>getArgument(0), "rw")) {
+                file.seek(file.length() - 1);
+                int last = file.read();
+                file.seek(file.length() - 1);
+                file.write(last ^ 0xFF);
+            }
+            return null;
+        }).when(updater).update(any(), any());
+
+        assertThrows(VerificationFailedException.class, () -> cmd.execute(
+                "-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--verify"));
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        verify(updater, times(2)).update(outputFile, new TrackTags("001"));
+    }
+
+    @Test
+    public void a_track_that_was_only_tagged_again_and_fails_verify_is_copied_again() throws IOException {
+        File inputFile = new Mp4Fixture().writeTo(new File(inputDir, "1-001 first.m4a"));
+        File outputFile = new File(outputDir, inputFile.getName());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        doAnswer((invocation) -> {
+            if (!invocation.<TrackTags>getArgument(1).getAlbumFields().isEmpty()) {
+                try (RandomAccessFile file = new RandomAccessFile(invocation.<File>getArgument(0), "rw")) {
+                    file.seek(file.length() - 1);
+                    int last = file.read();
+                    file.seek(file.length() - 1);
+                    file.write(last ^ 0xFF);
+                }
+            }
+            return null;
+        }).when(updater).update(any(), any());
+
+        assertThrows(VerificationFailedException.class, () -> cmd.execute(
+                "-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--album", "Album", "--verify"));
+        assertFalse(FileUtils.contentEquals(inputFile, outputFile));
+
+        doAnswer((invocation) -> null).when(updater).update(any(), any());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--album", "Album");
+
+        assertTrue(FileUtils.contentEquals(inputFile, outputFile));
+    }
+
+    @Test
+    public void a_later_run_with_verify_checks_the_files_that_did_not_change() throws IOException {
+        File inputFile = new Mp4Fixture().writeTo(new File(inputDir, "1-001 first.m4a"));
+        File outputFile = new File(outputDir, inputFile.getName());
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        try (RandomAccessFile file = new RandomAccessFile(outputFile, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        assertThrows(VerificationFailedException.class, () -> cmd.execute(
+                "-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--verify"));
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+        verify(updater, times(2)).update(outputFile, new TrackTags("001"));
+    }
+
+    @Test
+    public void plan_does_not_copy_or_tag_anything() {
+        generateRandomFilesIn(inputDir, 2, 2, AUDIO_FILE_EXTENSION);
+        File outputDir = new File(rootDir, "does-not-exist");
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--plan");
+
+        assertFalse(outputDir.exists());
+        verify(updater, never()).update(any(), any());
+        verify(updater, never()).copyWithTags(any(), any(), any());
+    }
+
+    @Test
+    public void library_mode_renumbers_each_album_on_its_own() {
+        File firstAlbum = new File(inputDir, "artist/first album");
+        File secondAlbum = new File(inputDir, "second album");
+        firstAlbum.mkdirs();
+        secondAlbum.mkdirs();
+        List<File> firstAlbumFiles = generateRandomFilesIn(firstAlbum, 2, 2, AUDIO_FILE_EXTENSION);
+        List<File> secondAlbumFiles = generateRandomFilesIn(secondAlbum, 1, 3, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--library");
+
+        File firstAlbumOutput = new File(outputDir, "artist/first album");
+        File secondAlbumOutput = new File(outputDir, "second album");
+        assertFilesCopied(firstAlbumFiles, firstAlbumOutput);
+        assertFilesCopied(secondAlbumFiles, secondAlbumOutput);
+        for (int i = 0; i < firstAlbumFiles.size(); i++) {
+            File outputFile = new File(firstAlbumOutput, firstAlbumFiles.get(i).getName());
+            verify(updater).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+        for (int i = 0; i < secondAlbumFiles.size(); i++) {
+            File outputFile = new File(secondAlbumOutput, secondAlbumFiles.get(i).getName());
+            verify(updater).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+        }
+    }
+
+    @Test
+    public void shards_split_the_albums_of_a_library() throws IOException {
+        List<File> inputFiles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            File album = new File(inputDir, "artist/album " + i);
+            album.mkdirs();
+            inputFiles.addAll(generateRandomFilesIn(album, 1, 2, AUDIO_FILE_EXTENSION));
+        }
+
+        for (int shard = 1; shard <= 3; shard++) {
+            cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--library", "--shard", shard + "/3");
+        }
+
+        for (File inputFile : inputFiles) {
+            File outputFile = new File(outputDir, inputDir.toPath().relativize(inputFile.toPath()).toString());
+            assertTrue(outputFile.exists(), outputFile.getPath());
+            verify(updater, times(1)).update(eq(outputFile), any());
+        }
+        for (int shard = 1; shard <= 3; shard++) {
+            assertTrue(new File(outputDir, ".george-report-shard-" + shard + "-of-3.json").exists());
+        }
+        assertFalse(new File(outputDir, RunReport.FILE_NAME).exists());
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--merge-reports");
+
+        JsonObject report = Json.parse(FileUtils.readFileToString(new File(outputDir, RunReport.FILE_NAME), "UTF-8")).asObject();
+        assertEquals(inputFiles.size(), report.getLong("files-copied", 0));
+        assertEquals(inputFiles.size(), report.getLong("files-numbered", 0));
+        assertEquals(inputFiles.stream().mapToLong(File::length).sum(), report.getLong("bytes-copied", 0));
+        assertEquals(3, report.get("settings").asObject().getInt("shards", 0));
+        assertEquals(inputFiles.size(), report.get("stages").asObject().get("copy").asObject().getLong("count", 0));
+        assertEquals(6, report.get("stages").asObject().get("list").asObject().getLong("count", 0));
+        assertEquals(inputFiles.size(), report.get("files").asArray().values().stream()
+                .filter((file) -> file.asObject().get("copy-ms") != null)
+                .count());
+    }
+
+    @Test
+    public void shard_must_be_one_of_the_shards() {
+        assertThrows(ArgsParsingException.class, () -> cmd.execute(
+                "-i", inputDir.getAbsolutePath(),
+                "-o", outputDir.getAbsolutePath(),
+                "--library", "--shard", "4/3"
+        ));
+    }
+
+    @Test
+    public void tracks_are_written_straight_from_an_archive_and_tagged_before_they_are_in_place() {
+        File archive = new ArchiveFixture()
+                .entry("album/2-01 third.m4a", "third")
+                .entry("album/1-02 second.m4a", "second")
+                .entry("album/1-01 first.m4a", "first")
+                .entry("album/cover.jpg", "cover")
+                .writeTo(new File(rootDir, "album.zip"));
+        CopyAudioFile copyAudioFile = new CopyAudioFile();
+        List<String> tagged = new ArrayList<>();
+        doAnswer((invocation) -> {
+            File file = invocation.getArgument(0);
+            assertTrue(file.exists());
+            tagged.add(file.getName());
+            return null;
+        }).when(updater).update(any(), any());
+
+        cmd.execute("-i", archive.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        List<String> names = Arrays.asList("1-01 first.m4a", "1-02 second.m4a", "2-01 third.m4a");
+        for (int i = 0; i < names.size(); i++) {
+            File outputFile = new File(outputDir, names.get(i));
+            verify(updater).update(copyAudioFile.partFileOf(outputFile), new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+            assertTrue(outputFile.exists());
+            assertFalse(copyAudioFile.partFileOf(outputFile).exists());
+        }
+        assertEquals("first", readFile(new File(outputDir, "1-01 first.m4a")));
+        assertEquals("third", readFile(new File(outputDir, "2-01 third.m4a")));
+        assertEquals(3, tagged.size());
+        assertFalse(new File(outputDir, "cover.jpg").exists());
+    }
+
+    @Test
+    public void an_archive_can_not_be_a_library() {
+        File archive = new ArchiveFixture().entry("1-01 first.m4a", "first").writeTo(new File(rootDir, "album.tar"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cmd.execute("-i", archive.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--library"));
+    }
+
+    @Test
+    public void options_that_need_the_sources_as_files_can_not_be_used_with_an_archive() {
+        File archive = new ArchiveFixture().entry("1-01 first.m4a", "first").writeTo(new File(rootDir, "album.tar"));
+
+        for (String[] option : new String[][]{{"--verify"}, {"--hash"}, {"--resume"}, {"--copy-mode", "link"}}) {
+            List<String> args = new ArrayList<>(Arrays.asList("-i", archive.getAbsolutePath(), "-o", outputDir.getAbsolutePath()));
+            args.addAll(Arrays.asList(option));
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> cmd.execute(args.toArray(new String[0])));
+            assertTrue(e.getMessage().contains(option[0]), e.getMessage());
+        }
+        assertFalse(new File(outputDir, "1-01 first.m4a").exists());
+    }
+
+    @Test
+    public void an_archive_does_not_touch_the_manifest() throws IOException {
+        File archive = new ArchiveFixture().entry("1-01 first.m4a", "first").writeTo(new File(rootDir, "album.tar"));
+        outputDir.mkdirs();
+        File journal = new File(outputDir, TrackManifest.JOURNAL_FILE_NAME);
+        FileUtils.writeStringToFile(journal, "left by a run that died\n", "UTF-8");
+
+        cmd.execute("-i", archive.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
+
+        assertTrue(journal.exists());
+    }
+
+    @Test
+    public void a_library_can_not_be_inside_the_output_directory() {
+        File library = new File(outputDir, "library");
+        generateRandomFilesIn(new File(library, "album"), 1, 2, AUDIO_FILE_EXTENSION);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cmd.execute("-i", library.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--library"));
+        assertThrows(IllegalArgumentException.class,
+                () -> cmd.execute("-i", library.getAbsolutePath(), "-o", library.getAbsolutePath(), "--library"));
+        verify(updater, never()).update(any(), any());
+    }
+
+    @Test
+    public void library_mode_ignores_directories_without_disk_tracks() {
+        File notAnAlbum = new File(inputDir, "not an album");
+        notAnAlbum.mkdirs();
+        generateRandomFilesIn(notAnAlbum, 1, 1, "txt");
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--library");
+
+        assertEquals(0, filesCopiedTo(outputDir).length);
+    }
+
+    @Test
+    public void every_engine_copies_and_renumbers_the_files() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 2, 3, AUDIO_FILE_EXTENSION);
+
+        for (String engine : Arrays.asList("bounded-elastic", "fixed", "parallel")) {
+            File engineOutputDir = new File(outputDir, engine);
+
+            cmd.execute("-i", inputDir.getAbsolutePath(), "-o", engineOutputDir.getAbsolutePath(),
+                    "--engine", engine, "--pool-size", "2", "--max-concurrency", "3");
+
+            assertFilesCopied(inputFiles, engineOutputDir);
+            for (int i = 0; i < inputFiles.size(); i++) {
+                File outputFile = new File(engineOutputDir, inputFiles.get(i).getName());
+                verify(updater).update(outputFile, new TrackTags(StringUtils.leftPad(String.valueOf(i + 1), 3, "0")));
+            }
+        }
+    }
+
+    @Test
+    public void network_storage() {
+        List<File> inputFiles = generateRandomFilesIn(inputDir, 1, 3, AUDIO_FILE_EXTENSION);
+
+        cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "--storage", "network");
+
+        assertFilesCopied(inputFiles, outputDir);
+    }
+
+    @Test
+    public void tag_concurrency_must_be_positive() {
+        assertThrows(ArgsParsingException.class, () -> cmd.execute(
+                "-i", inputDir.getAbsolutePath(),
+                "-o", outputDir.getAbsolutePath(),
+                "--tag-concurrency", "0"
+        ));
+    }
+
     @Test
     public void ignore_audio_files_that_do_not_have_the_correct_filename_prefix() {
         File randomTrack = new File(inputDir, "should-not-be-copied." + AUDIO_FILE_EXTENSION);
@@ -69,7 +623,7 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
 
         cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
 
-        assertEquals(0, outputDir.listFiles().length);
+        assertEquals(0, filesCopiedTo(outputDir).length);
     }
 
     @Test
@@ -81,7 +635,7 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
 
         cmd.execute("-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath());
 
-        assertEquals(0, outputDir.listFiles().length);
+        assertEquals(0, filesCopiedTo(outputDir).length);
     }
 
     @Test
@@ -135,6 +689,14 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
         assertThrows(ArgsParsingException.class, () -> cmd.execute("-o", outputDir.getAbsolutePath()));
     }
 
+    private String readFile(File file) {
+        try {
+            return FileUtils.readFileToString(file, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file", e);
+        }
+    }
+
     private String checksum(File file) {
         try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
             return DigestUtils.sha256Hex(input);
@@ -151,6 +713,10 @@ class RenumberTrackMetadataForMultipleDiskAlbumCommandTest {
         }
     }
 
+    private File[] filesCopiedTo(File outputDir) {
+        return outputDir.listFiles((dir, name) -> !name.equals(RunReport.FILE_NAME));
+    }
+
     private void assertFilesCopied(List<File> inputFiles, File outputDir) {
         inputFiles.forEach((expectedFile) -> {
             File actualFile = new File(outputDir, expectedFile.getName());
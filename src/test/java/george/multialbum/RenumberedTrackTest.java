@@ -0,0 +1,27 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RenumberedTrackTest {
+    @Test
+    public void tracksAreNumberedAcrossDisks() {
+        File outputDir = new File("output");
+        DiskTrack disk1Track1 = new DiskTrack(new File("input", "1-01 blah.m4a"));
+        DiskTrack disk1Track2 = new DiskTrack(new File("input", "1-02 blah.m4a"));
+        DiskTrack disk2Track1 = new DiskTrack(new File("input", "2-01 blah.m4a"));
+
+        List<RenumberedTrack> tracks = RenumberedTrack.number(Arrays.asList(disk2Track1, disk1Track2, disk1Track1), outputDir);
+
+        assertEquals(Arrays.asList(
+                new RenumberedTrack(disk1Track1, new File(outputDir, "1-01 blah.m4a"), "001", "003"),
+                new RenumberedTrack(disk1Track2, new File(outputDir, "1-02 blah.m4a"), "002", "003"),
+                new RenumberedTrack(disk2Track1, new File(outputDir, "2-01 blah.m4a"), "003", "003")
+        ), tracks);
+    }
+}
@@ -0,0 +1,76 @@
+package george.multialbum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardTest {
+    private final File libraryDir = new File("library");
+    private final File outputDir = new File("output");
+
+    @Test
+    public void every_album_is_in_exactly_one_shard() {
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            albums.add(album("artist " + (i % 7) + "/album " + i));
+        }
+
+        List<Album> selected = new ArrayList<>();
+        for (int index = 1; index <= 4; index++) {
+            List<Album> shard = new Shard(index, 4).select(libraryDir, albums);
+            assertFalse(shard.isEmpty());
+            selected.addAll(shard);
+        }
+
+        assertEquals(albums.size(), selected.size());
+        assertTrue(selected.containsAll(albums));
+    }
+
+    @Test
+    public void an_album_stays_in_its_shard_when_other_albums_are_added() {
+        Album album = album("artist/album");
+        Shard shard = shardOf(album, 3);
+
+        List<Album> albums = new ArrayList<>();
+        albums.add(album("artist/another album"));
+        albums.add(album);
+        albums.add(album("other artist/album"));
+
+        assertTrue(shard.select(libraryDir, albums).contains(album));
+        assertTrue(shard.contains(new File("library/../library"), album));
+    }
+
+    @Test
+    public void a_single_shard_has_every_album() {
+        assertTrue(new Shard(1, 1).contains(libraryDir, album("artist/album")));
+    }
+
+    @Test
+    public void parse() {
+        assertEquals(new Shard(2, 4), Shard.parse("2/4"));
+        assertEquals("2/4", Shard.parse(" 2 / 4 ").toString());
+        assertEquals(".george-report-shard-2-of-4.json", Shard.parse("2/4").getReportFileName());
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("5/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("2"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("a/b"));
+    }
+
+    private Shard shardOf(Album album, int count) {
+        for (int index = 1; index <= count; index++) {
+            Shard shard = new Shard(index, count);
+            if (shard.contains(libraryDir, album)) {
+                return shard;
+            }
+        }
+        throw new AssertionError("Album is in no shard: " + album);
+    }
+
+    private Album album(String path) {
+        return new Album(new File(libraryDir, path), new File(outputDir, path));
+    }
+}
@@ -0,0 +1,145 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackManifestTest {
+    @TempDir
+    Path temp;
+
+    private File outputDir;
+    private RenumberedTrack first;
+    private RenumberedTrack second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File inputDir = temp.resolve("input").toFile();
+        outputDir = temp.resolve("output").toFile();
+        first = track(inputDir, "1-01 first.m4a", "001");
+        second = track(inputDir, "1-02 second.m4a", "002");
+    }
+
+    @Test
+    public void resume_replays_the_journal_of_a_run_that_was_not_saved() {
+        record(TrackManifest.load(outputDir, false), first);
+
+        TrackManifest manifest = TrackManifest.load(outputDir, true);
+
+        assertTrue(upToDate(manifest, first));
+        assertTrue(sourceChanged(manifest, second));
+    }
+
+    @Test
+    public void without_resume_the_journal_is_thrown_away() {
+        record(TrackManifest.load(outputDir, false), first);
+
+        TrackManifest manifest = TrackManifest.load(outputDir, false);
+
+        assertTrue(sourceChanged(manifest, first));
+        assertFalse(new File(outputDir, TrackManifest.JOURNAL_FILE_NAME).exists());
+    }
+
+    @Test
+    public void save_replaces_the_journal_with_the_manifest() {
+        TrackManifest manifest = TrackManifest.load(outputDir, false);
+        record(manifest, first);
+        manifest.save();
+
+        assertFalse(new File(outputDir, TrackManifest.JOURNAL_FILE_NAME).exists());
+        assertTrue(upToDate(TrackManifest.load(outputDir, false), first));
+    }
+
+    @Test
+    public void close_keeps_the_journal_for_a_resume_and_recording_opens_it_again() {
+        try (TrackManifest manifest = TrackManifest.load(outputDir, false)) {
+            record(manifest, first);
+            manifest.close();
+            record(manifest, second);
+        }
+
+        TrackManifest manifest = TrackManifest.load(outputDir, true);
+        assertTrue(upToDate(manifest, first));
+        assertTrue(upToDate(manifest, second));
+    }
+
+    @Test
+    public void resume_skips_a_line_that_was_cut_off() throws IOException {
+        record(TrackManifest.load(outputDir, false), first);
+        File journal = new File(outputDir, TrackManifest.JOURNAL_FILE_NAME);
+        FileUtils.write(journal, second.getOutputFile().getName() + "\t12\tcut", StandardCharsets.UTF_8, true);
+
+        TrackManifest manifest = TrackManifest.load(outputDir, true);
+        assertTrue(upToDate(manifest, first));
+        assertTrue(sourceChanged(manifest, second));
+
+        record(manifest, second);
+        assertTrue(upToDate(TrackManifest.load(outputDir, true), second));
+    }
+
+    @Test
+    public void the_source_changed_no_matter_the_track_number() throws IOException {
+        TrackManifest manifest = TrackManifest.load(outputDir, false);
+        record(manifest, first);
+        RenumberedTrack renumbered = new RenumberedTrack(first.getDiskTrack(), first.getOutputFile(), "005");
+
+        assertFalse(sourceChanged(manifest, renumbered));
+        assertTrue(manifest.tagsChanged(renumbered, new TrackTags("005")));
+
+        FileUtils.write(first.getInputFile(), "changed", StandardCharsets.UTF_8);
+        assertTrue(sourceChanged(manifest, first));
+        assertTrue(sourceChanged(manifest, second));
+    }
+
+    @Test
+    public void any_field_of_the_tags_that_changed_means_the_track_is_tagged_again() {
+        TrackManifest manifest = TrackManifest.load(outputDir, false);
+        TrackTags tags = new TrackTags("001").setTrackTotal("002").setAlbumField(TrackTags.AlbumField.ALBUM, "Album");
+        manifest.record(first, tags, false);
+        manifest.save();
+
+        manifest = TrackManifest.load(outputDir, false);
+        assertFalse(manifest.tagsChanged(first, tags));
+        assertTrue(manifest.tagsChanged(first, new TrackTags("001")));
+        assertTrue(manifest.tagsChanged(first,
+                new TrackTags("001").setTrackTotal("002").setAlbumField(TrackTags.AlbumField.ALBUM, "Other")));
+    }
+
+    @Test
+    public void forget_means_the_track_is_copied_again() {
+        TrackManifest manifest = TrackManifest.load(outputDir, false);
+        record(manifest, first);
+
+        manifest.forget(first);
+
+        assertTrue(sourceChanged(manifest, first));
+    }
+
+    private void record(TrackManifest manifest, RenumberedTrack track) {
+        manifest.record(track, new TrackTags(track.getTrackNumber()), false);
+    }
+
+    private boolean sourceChanged(TrackManifest manifest, RenumberedTrack track) {
+        return manifest.sourceChanged(track.getInputFile(), track.getOutputFile(), false);
+    }
+
+    private boolean upToDate(TrackManifest manifest, RenumberedTrack track) {
+        return !sourceChanged(manifest, track) && !manifest.tagsChanged(track, new TrackTags(track.getTrackNumber()));
+    }
+
+    private RenumberedTrack track(File inputDir, String name, String trackNumber) throws IOException {
+        File inputFile = new File(inputDir, name);
+        File outputFile = new File(outputDir, name);
+        FileUtils.write(inputFile, name, StandardCharsets.UTF_8);
+        FileUtils.write(outputFile, name, StandardCharsets.UTF_8);
+        return new RenumberedTrack(new DiskTrack(inputFile), outputFile, trackNumber);
+    }
+}
@@ -0,0 +1,90 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateTrackNumberInFlacTest {
+    @TempDir
+    Path temp;
+
+    private final UpdateTrackNumberInFlac updater = new UpdateTrackNumberInFlac();
+
+    @Test
+    public void same_size_track_number() throws Exception {
+        File file = new FlacFixture().trackNumber("3").title("title").writeTo(temp.resolve("1-03 blah.flac").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, 4));
+
+        assertEquals(length, file.length());
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("4", tag.getFirst(FieldKey.TRACK));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void larger_track_number_takes_from_the_padding() throws Exception {
+        File file = new FlacFixture().trackNumber("3/9").writeTo(temp.resolve("1-03 blah.flac").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertTrue(updater.patch(file, 12));
+
+        byte[] patched = Files.readAllBytes(file.toPath());
+        assertEquals(original.length, patched.length);
+        assertArrayEquals(Arrays.copyOfRange(original, original.length - 4096, original.length),
+                Arrays.copyOfRange(patched, patched.length - 4096, patched.length));
+        assertEquals(12, updater.trackNumberOf(file));
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12/9", tag.getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void writes_every_field_from_the_padding() throws Exception {
+        File file = new FlacFixture().trackNumber("3/9").title("title").writeTo(temp.resolve("1-03 blah.flac").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, new TrackTags("012").setTrackTotal("020").setDisc("1", "1")
+                .setAlbumField(TrackTags.AlbumField.ALBUM, "Album")));
+
+        assertEquals(length, file.length());
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("20", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_NO));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_TOTAL));
+        assertEquals("Album", tag.getFirst(FieldKey.ALBUM));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void no_padding_to_take_from() throws Exception {
+        File file = new FlacFixture().trackNumber("3").padding(-1).writeTo(temp.resolve("1-03 blah.flac").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertFalse(updater.patch(file, 12));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+
+        updater.update(file, new TrackTags("12"));
+
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void not_a_flac_file() throws Exception {
+        File file = temp.resolve("1-03 blah.flac").toFile();
+        Files.write(file.toPath(), "not a flac file".getBytes("UTF-8"));
+
+        assertFalse(updater.patch(file, 12));
+        assertEquals(-1, updater.trackNumberOf(file));
+    }
+}
@@ -0,0 +1,147 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateTrackNumberInMetaDataTest {
+    @TempDir
+    Path temp;
+
+    private final UpdateTrackNumberInMetaData updater = new UpdateTrackNumberInMetaData();
+
+    @Test
+    public void update() throws Exception {
+        File file = new Mp4Fixture().trackNumber(3).writeTo(temp.resolve("1-03 blah.m4a").toFile());
+
+        updater.update(file, new TrackTags("012"));
+
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void update_falls_back_to_rewriting_the_tag_when_there_is_no_track_number_atom() throws Exception {
+        File file = new Mp4Fixture().withoutTrackNumber().writeTo(temp.resolve("1-03 blah.m4a").toFile());
+
+        updater.update(file, new TrackTags("012"));
+
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void update_writes_every_field_in_one_commit() throws Exception {
+        File file = new Mp4Fixture().trackNumber(3).title("title").writeTo(temp.resolve("1-03 blah.m4a").toFile());
+
+        updater.update(file, new TrackTags("012").setTrackTotal("020").setDisc("1", "1")
+                .setAlbumField(TrackTags.AlbumField.ALBUM, "Album")
+                .setAlbumField(TrackTags.AlbumField.ALBUM_ARTIST, "Artist"));
+
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("20", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_NO));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_TOTAL));
+        assertEquals("Album", tag.getFirst(FieldKey.ALBUM));
+        assertEquals("Artist", tag.getFirst(FieldKey.ALBUM_ARTIST));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void tag_timings_are_recorded_for_the_file_a_part_file_is_written_for() throws Exception {
+        File outputFile = temp.resolve("1-03 blah.m4a").toFile();
+        File partFile = new CopyAudioFile().partFileOf(outputFile);
+        new Mp4Fixture().withoutTrackNumber().writeTo(partFile);
+        RunMetrics metrics = new RunMetrics();
+        updater.setMetrics(metrics);
+
+        updater.update(partFile, new TrackTags("012"));
+
+        AtomicLongArray timings = metrics.getFileTimings().get(outputFile.getPath());
+        assertTrue(timings.get(RunMetrics.Stage.TAG_READ.ordinal()) > 0);
+        assertTrue(timings.get(RunMetrics.Stage.TAG_COMMIT.ordinal()) > 0);
+    }
+
+    @Test
+    public void copyWithTags() throws Exception {
+        File source = new Mp4Fixture().trackNumber(3).title("title").writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        File destination = temp.resolve("copy.m4a").toFile();
+
+        updater.copyWithTags(source, destination, new TrackTags("012"));
+
+        assertEquals("12", AudioFileIO.read(destination).getTag().getFirst(FieldKey.TRACK));
+        assertEquals("title", AudioFileIO.read(destination).getTag().getFirst(FieldKey.TITLE));
+        assertEquals("3", AudioFileIO.read(source).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void copyWithTags_parses_a_source_once_and_leaves_the_cached_tag_as_it_was() throws Exception {
+        File source = new Mp4Fixture().trackNumber(3).title("title").writeTo(temp.resolve("1-03 blah.m4a").toFile());
+        File withAlbum = temp.resolve("with-album.m4a").toFile();
+        File withoutAlbum = temp.resolve("without-album.m4a").toFile();
+        AudioFileCache cache = new AudioFileCache();
+        updater.setAudioFileCache(cache);
+
+        updater.copyWithTags(source, withAlbum, new TrackTags("012").setAlbumField(TrackTags.AlbumField.ALBUM, "Album"));
+        updater.copyWithTags(source, withoutAlbum, new TrackTags("013"));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals("Album", AudioFileIO.read(withAlbum).getTag().getFirst(FieldKey.ALBUM));
+        Tag tag = AudioFileIO.read(withoutAlbum).getTag();
+        assertEquals("13", tag.getFirst(FieldKey.TRACK));
+        assertEquals("", tag.getFirst(FieldKey.ALBUM));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void a_writer_is_created_once_the_first_file_of_its_format_is_tagged() {
+        AtomicInteger created = new AtomicInteger();
+        List<File> updated = new ArrayList<>();
+        RunMetrics metrics = new RunMetrics();
+        List<RunMetrics> metricsOfWriter = new ArrayList<>();
+        updater.register("xyz", () -> {
+            created.incrementAndGet();
+            return new TagWriter() {
+                @Override
+                public void update(File audioFile, TrackTags tags) {
+                    updated.add(audioFile);
+                }
+
+                @Override
+                public void setMetrics(RunMetrics metrics) {
+                    metricsOfWriter.add(metrics);
+                }
+            };
+        });
+        updater.setMetrics(metrics);
+        assertEquals(0, created.get());
+
+        updater.update(new File("1-01 blah.xyz"), new TrackTags("001"));
+        updater.update(new File("1-02 blah.XYZ"), new TrackTags("002"));
+
+        assertEquals(1, created.get());
+        assertEquals(Arrays.asList(new File("1-01 blah.xyz"), new File("1-02 blah.XYZ")), updated);
+        assertEquals(Collections.singletonList(metrics), metricsOfWriter);
+    }
+
+    @Test
+    public void not_an_audio_file() {
+        File file = temp.resolve("1-01 blah.m4a").toFile();
+
+        assertThrows(IllegalStateException.class, () -> updater.update(file, new TrackTags("001")));
+    }
+}
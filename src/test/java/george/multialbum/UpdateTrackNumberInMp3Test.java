@@ -0,0 +1,119 @@
+package george.multialbum;
+
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateTrackNumberInMp3Test {
+    @TempDir
+    Path temp;
+
+    private final UpdateTrackNumberInMp3 updater = new UpdateTrackNumberInMp3();
+
+    @Test
+    public void update_in_place_keeps_the_track_total() throws Exception {
+        File file = new Mp3Fixture().trackNumber("3/9").title("title").writeTo(temp.resolve("1-03 blah.mp3").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, 12));
+
+        assertEquals(length, file.length());
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("9", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+        assertEquals(12, updater.trackNumberOf(file));
+    }
+
+    @Test
+    public void update_in_place_for_id3v24() throws Exception {
+        File file = new Mp3Fixture().version(4).trackNumber("3").writeTo(temp.resolve("1-03 blah.mp3").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, 12));
+
+        assertEquals(length, file.length());
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void adds_a_track_number_frame_to_the_padding() throws Exception {
+        File file = new Mp3Fixture().withoutTrackNumber().writeTo(temp.resolve("1-03 blah.mp3").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, 12));
+
+        assertEquals(length, file.length());
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void writes_every_field_in_place() throws Exception {
+        File file = new Mp3Fixture().trackNumber("3/9").title("title").writeTo(temp.resolve("1-03 blah.mp3").toFile());
+        long length = file.length();
+
+        TrackTags tags = new TrackTags("012").setTrackTotal("020").setDisc("1", "1")
+                .setAlbumField(TrackTags.AlbumField.ALBUM, "Album")
+                .setAlbumField(TrackTags.AlbumField.ALBUM_ARTIST, "Ärtist");
+        assertTrue(updater.patch(file, tags));
+
+        assertEquals(length, file.length());
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("12", tag.getFirst(FieldKey.TRACK));
+        assertEquals("20", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_NO));
+        assertEquals("1", tag.getFirst(FieldKey.DISC_TOTAL));
+        assertEquals("Album", tag.getFirst(FieldKey.ALBUM));
+        assertEquals("Ärtist", tag.getFirst(FieldKey.ALBUM_ARTIST));
+        assertEquals("title", tag.getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void writes_text_latin1_can_not_hold() throws Exception {
+        File file = new Mp3Fixture().trackNumber("3").writeTo(temp.resolve("1-03 blah.mp3").toFile());
+
+        assertTrue(updater.patch(file, new TrackTags("3").setAlbumField(TrackTags.AlbumField.ALBUM, "アルバム")));
+
+        assertEquals("アルバム", AudioFileIO.read(file).getTag().getFirst(FieldKey.ALBUM));
+    }
+
+    @Test
+    public void updates_the_id3v1_track_number_too() throws Exception {
+        File file = new Mp3Fixture().trackNumber("3").withId3v1().writeTo(temp.resolve("1-03 blah.mp3").toFile());
+
+        assertTrue(updater.patch(file, 12));
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(12, bytes[bytes.length - 2]);
+    }
+
+    @Test
+    public void no_room_in_the_tag() throws Exception {
+        File file = new Mp3Fixture().trackNumber("3").padding(0).writeTo(temp.resolve("1-03 blah.mp3").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertFalse(updater.patch(file, 12));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+
+        updater.update(file, new TrackTags("12"));
+
+        assertEquals("12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+    }
+
+    @Test
+    public void not_an_mp3_file() throws Exception {
+        File file = temp.resolve("1-03 blah.mp3").toFile();
+        Files.write(file.toPath(), "not an mp3 file".getBytes("UTF-8"));
+
+        assertFalse(updater.patch(file, 12));
+        assertEquals(-1, updater.trackNumberOf(file));
+    }
+}
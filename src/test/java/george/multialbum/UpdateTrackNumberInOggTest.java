@@ -0,0 +1,82 @@
+package george.multialbum;
+
+import org.apache.commons.lang.StringUtils;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateTrackNumberInOggTest {
+    @TempDir
+    Path temp;
+
+    private final UpdateTrackNumberInOgg updater = new UpdateTrackNumberInOgg();
+
+    @Test
+    public void zero_padded_track_number() throws Exception {
+        File file = new OggFixture().trackNumber("03/12").title("title").writeTo(temp.resolve("1-03 blah.ogg").toFile());
+        long length = file.length();
+
+        assertTrue(updater.patch(file, 12));
+
+        assertEquals(length, file.length());
+        assertTrue(OggFixture.checksumsAreValid(file));
+        assertEquals(12, updater.trackNumberOf(file));
+        assertEquals("12/12", AudioFileIO.read(file).getTag().getFirst(FieldKey.TRACK));
+        assertEquals("title", AudioFileIO.read(file).getTag().getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void comment_header_split_over_pages() throws Exception {
+        String title = StringUtils.repeat("title ", 100);
+        File file = new OggFixture().trackNumber("07").title(title).segmentsPerPage(1).writeTo(temp.resolve("1-07 blah.ogg").toFile());
+
+        assertTrue(updater.patch(file, 15));
+
+        assertTrue(OggFixture.checksumsAreValid(file));
+        assertEquals(15, updater.trackNumberOf(file));
+        assertEquals(title, AudioFileIO.read(file).getTag().getFirst(FieldKey.TITLE));
+    }
+
+    @Test
+    public void wider_track_number() throws Exception {
+        File file = new OggFixture().trackNumber("3").writeTo(temp.resolve("1-03 blah.ogg").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        assertFalse(updater.patch(file, 12));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void more_fields_than_fit_fall_back_to_rewriting_the_tag() throws Exception {
+        File file = new OggFixture().trackNumber("03").writeTo(temp.resolve("1-03 blah.ogg").toFile());
+        byte[] original = Files.readAllBytes(file.toPath());
+        TrackTags tags = new TrackTags("012").setTrackTotal("020").setAlbumField(TrackTags.AlbumField.ALBUM, "Album");
+
+        assertFalse(updater.patch(file, tags));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+
+        updater.update(file, tags);
+
+        Tag tag = AudioFileIO.read(file).getTag();
+        assertEquals("012", tag.getFirst(FieldKey.TRACK));
+        assertEquals("020", tag.getFirst(FieldKey.TRACK_TOTAL));
+        assertEquals("Album", tag.getFirst(FieldKey.ALBUM));
+    }
+
+    @Test
+    public void not_an_ogg_file() throws Exception {
+        File file = temp.resolve("1-03 blah.ogg").toFile();
+        Files.write(file.toPath(), "not an ogg file".getBytes("UTF-8"));
+
+        assertFalse(updater.patch(file, 12));
+        assertEquals(-1, updater.trackNumberOf(file));
+    }
+}
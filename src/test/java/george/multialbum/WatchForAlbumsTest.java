@@ -0,0 +1,99 @@
+package george.multialbum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchForAlbumsTest {
+    private static final Duration DEBOUNCE = Duration.ofMillis(300);
+
+    @TempDir
+    Path temp;
+
+    private final DiskTrackNameParser parser = new DiskTrackNameParser(Collections.singletonList("m4a"));
+    private final BlockingQueue<Album> settledAlbums = new LinkedBlockingQueue<>();
+    private WatchForAlbums watchForAlbums;
+    private Thread watching;
+    private File inputDir;
+    private File outputDir;
+
+    @BeforeEach
+    void setUp() {
+        inputDir = temp.resolve("input").toFile();
+        outputDir = temp.resolve("output").toFile();
+        inputDir.mkdirs();
+        watchForAlbums = new WatchForAlbums((file) -> parser.parse(file.toString()).isDiskTrack(), DEBOUNCE);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        watchForAlbums.close();
+        watching.join(5000);
+        assertFalse(watching.isAlive());
+    }
+
+    @Test
+    public void an_album_settles_once_its_tracks_stop_changing() throws Exception {
+        startWatching(false);
+
+        for (int i = 1; i <= 3; i++) {
+            writeTrack(new File(inputDir, "1-0" + i + " track.m4a"));
+            Thread.sleep(DEBOUNCE.toMillis() / 3);
+        }
+
+        assertEquals(new Album(inputDir.getAbsoluteFile(), outputDir.getAbsoluteFile()), settledAlbums.poll(10, TimeUnit.SECONDS));
+        assertNull(settledAlbums.poll(DEBOUNCE.toMillis() * 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void files_that_are_not_disk_tracks_are_ignored() throws Exception {
+        startWatching(false);
+
+        writeTrack(new File(inputDir, "cover.jpg"));
+
+        assertNull(settledAlbums.poll(DEBOUNCE.toMillis() * 3, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void library_mode_settles_albums_in_new_directories() throws Exception {
+        startWatching(true);
+
+        File albumDir = new File(inputDir, "artist/album");
+        albumDir.mkdirs();
+        Thread.sleep(DEBOUNCE.toMillis() / 3);
+        writeTrack(new File(albumDir, "1-01 track.m4a"));
+
+        Album album = settledAlbums.poll(10, TimeUnit.SECONDS);
+        assertNotNull(album);
+        assertEquals(albumDir.getAbsoluteFile(), album.getInputDir());
+        assertEquals(new File(outputDir, "artist/album").getAbsoluteFile(), album.getOutputDir());
+    }
+
+    private void startWatching(boolean library) {
+        watching = new Thread(() -> watchForAlbums.watch(inputDir, outputDir, library, settledAlbums::add));
+        watching.start();
+        // give the watcher a moment to register before files are written
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeTrack(File file) throws IOException {
+        FileUtils.write(file, file.getName(), "UTF-8");
+    }
+}
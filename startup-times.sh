@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+# Times how long after starting george the first track of the training album is copied, for every way of starting it
+# that was built: the jar and the jar with the CDS archive (./mvnw -Pcds package). RUNS sets how many times each one
+# runs, JAVA the java to start the jar with.
+set -e
+
+RUNS=${RUNS:-5}
+JAVA=${JAVA:-java}
+ALBUM="$PWD/src/cds/training-album"
+APP="$PWD/target"
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+time_runs() {
+    local name=$1
+    shift
+    local total_first=0 total_wall=0
+    for i in $(seq "$RUNS"); do
+        local out="$WORK/$name-$i"
+        local start end first
+        start=$(date +%s%N)
+        (cd "$APP" && "$@" renumber-track-metadata -i "$ALBUM" -o "$out" --report "$out.json" > /dev/null)
+        end=$(date +%s%N)
+        first=$(grep -o '"first-copy-uptime-ms": *[0-9-]*' "$out.json" | grep -o '[0-9-]*$')
+        total_first=$((total_first + first))
+        total_wall=$((total_wall + (end - start) / 1000000))
+    done
+    printf '%-8s first copy after %5d ms, done after %5d ms (mean of %d runs)\n' "$name" \
+        $((total_first / RUNS)) $((total_wall / RUNS)) "$RUNS"
+}
+
+if [ ! -f "$APP/george.jar" ]; then
+    echo "Build george first: ./mvnw package" >&2
+    exit 1
+fi
+
+time_runs jar "$JAVA" -jar george.jar
+if [ -f "$APP/george.jsa" ]; then
+    time_runs cds "$JAVA" -XX:SharedArchiveFile=george.jsa -Xshare:auto -jar george.jar
+fi